@@ -0,0 +1,73 @@
+package com.bank.gateway.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Binds gateway.admission: the concurrency limit in front of the proxy and the rules that assign request classes
+@ConfigurationProperties(prefix = "gateway.admission")
+public class AdmissionProperties {
+    
+    // Highest first; under overload the lowest classes are shed first and critical is never shed
+    public enum Priority { CRITICAL, NORMAL, BULK }
+    
+    private boolean enabled = true;
+    private int maxConcurrent = 64;
+    // Keep max-concurrent + max-queue under server.tomcat.threads.max so a critical request always finds a thread
+    private int maxQueue = 96;
+    // Queue delay above target for a whole interval sheds one more class
+    private Duration target = Duration.ofMillis(20);
+    private Duration interval = Duration.ofMillis(100);
+    private Priority defaultPriority = Priority.NORMAL;
+    private Map<Priority, Duration> maxWait = new EnumMap<>(Map.of(
+            Priority.CRITICAL, Duration.ofSeconds(2),
+            Priority.NORMAL, Duration.ofSeconds(1),
+            Priority.BULK, Duration.ofMillis(250)));
+    // First matching rule wins
+    private List<Rule> rules = new ArrayList<>();
+    
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    
+    public int getMaxConcurrent() { return maxConcurrent; }
+    public void setMaxConcurrent(int maxConcurrent) { this.maxConcurrent = maxConcurrent; }
+    
+    public int getMaxQueue() { return maxQueue; }
+    public void setMaxQueue(int maxQueue) { this.maxQueue = maxQueue; }
+    
+    public Duration getTarget() { return target; }
+    public void setTarget(Duration target) { this.target = target; }
+    
+    public Duration getInterval() { return interval; }
+    public void setInterval(Duration interval) { this.interval = interval; }
+    
+    public Priority getDefaultPriority() { return defaultPriority; }
+    public void setDefaultPriority(Priority defaultPriority) { this.defaultPriority = defaultPriority; }
+    
+    public Map<Priority, Duration> getMaxWait() { return maxWait; }
+    public void setMaxWait(Map<Priority, Duration> maxWait) { this.maxWait = maxWait; }
+    
+    public List<Rule> getRules() { return rules; }
+    public void setRules(List<Rule> rules) { this.rules = rules; }
+    
+    public static class Rule {
+        // Exact path, or a path ending in /** for it and everything below it
+        private String path;
+        // Empty means every method
+        private List<String> methods = new ArrayList<>();
+        private Priority priority;
+        
+        public String getPath() { return path; }
+        public void setPath(String path) { this.path = path; }
+        
+        public List<String> getMethods() { return methods; }
+        public void setMethods(List<String> methods) { this.methods = methods; }
+        
+        public Priority getPriority() { return priority; }
+        public void setPriority(Priority priority) { this.priority = priority; }
+    }
+}
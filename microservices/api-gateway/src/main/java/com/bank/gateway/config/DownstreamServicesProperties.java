@@ -0,0 +1,54 @@
+package com.bank.gateway.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Binds the services.<name> blocks of application.yml, keyed by service name
+@ConfigurationProperties(prefix = "services")
+public class DownstreamServicesProperties extends LinkedHashMap<String, DownstreamServicesProperties.ServiceEndpoint> {
+    
+    public static class ServiceEndpoint {
+        private String url;
+        // Base URLs of every replica; when empty the service is the single instance at url
+        private List<String> instances = new ArrayList<>();
+        // Probed with GET on each instance when set, otherwise a TCP connect is the health check
+        private String healthPath;
+        private int maxConnections = 50;
+        private Duration connectTimeout = Duration.ofSeconds(1);
+        private Duration responseTimeout = Duration.ofSeconds(10);
+        // Bulkhead: requests to this service beyond this many in flight are rejected with 503
+        private int maxConcurrentCalls = 25;
+        
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+        
+        public List<String> getInstances() { return instances; }
+        public void setInstances(List<String> instances) { this.instances = instances; }
+        
+        public String getHealthPath() { return healthPath; }
+        public void setHealthPath(String healthPath) { this.healthPath = healthPath; }
+        
+        public List<String> resolveInstances() {
+            if (!instances.isEmpty()) {
+                return instances;
+            }
+            return url != null ? List.of(url) : List.of();
+        }
+        
+        public int getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+        
+        public Duration getConnectTimeout() { return connectTimeout; }
+        public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+        
+        public Duration getResponseTimeout() { return responseTimeout; }
+        public void setResponseTimeout(Duration responseTimeout) { this.responseTimeout = responseTimeout; }
+        
+        public int getMaxConcurrentCalls() { return maxConcurrentCalls; }
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) { this.maxConcurrentCalls = maxConcurrentCalls; }
+    }
+}
@@ -0,0 +1,38 @@
+package com.bank.gateway.config;
+
+import com.bank.security.IdentityAssertion;
+import com.bank.security.JwtAuthenticationFilter;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Verifies client JWTs only; an X-Bank-Identity header from a client is never trusted here
+@Component
+public class GatewayAuthenticationFilter extends JwtAuthenticationFilter {
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return isPublicEndpoint(request.getRequestURI());
+    }
+    
+    @Override
+    protected boolean acceptsAssertions() {
+        return false;
+    }
+    
+    // Forwarded in place of re-verification downstream; see GatewayService.copyRequestHeaders
+    @Override
+    protected void onTokenVerified(HttpServletRequest request, Claims claims, List<String> roles) {
+        request.setAttribute(IdentityAssertion.HEADER,
+                getIdentityAssertion().sign(claims.getSubject(), roles, claims.getExpiration()));
+    }
+    
+    private boolean isPublicEndpoint(String path) {
+        return path.equals("/health") ||
+               path.equals("/api/customers/register") ||
+               path.equals("/api/customers/login") ||
+               path.equals("/api/employees/login");
+    }
+}
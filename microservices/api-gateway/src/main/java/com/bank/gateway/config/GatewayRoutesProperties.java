@@ -0,0 +1,106 @@
+package com.bank.gateway.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "gateway")
+public class GatewayRoutesProperties {
+    
+    private List<RouteDefinition> routes = new ArrayList<>();
+    
+    public List<RouteDefinition> getRoutes() { return routes; }
+    public void setRoutes(List<RouteDefinition> routes) { this.routes = routes; }
+    
+    public static class RouteDefinition {
+        private String id;
+        private String pathPrefix;
+        // Replaces pathPrefix in the forwarded path; defaults to forwarding the path unchanged
+        private String rewritePrefix;
+        private String service;
+        // Empty means every method
+        private List<String> methods = new ArrayList<>();
+        // Overrides the service's response timeout for this route only
+        private Duration timeout;
+        // Concurrent identical GETs share one downstream call
+        private boolean coalesce;
+        // Successful GETs are cached per principal for this long; unset disables caching
+        private Duration cacheTtl;
+        // Paths relative to the prefix, e.g. /login, whose POSTs change nothing the route caches; they never invalidate it
+        private List<String> readOnlyPaths = new ArrayList<>();
+        // Path endings, e.g. /stream, whose responses are streamed straight through: never buffered, cached,
+        // coalesced or hedged
+        private List<String> passthroughSuffixes = new ArrayList<>();
+        // Path segment whose value is the affinity key, e.g. customer for /customer/{ssn}; requests carrying
+        // the same key go to the same instance via the service's hash ring
+        private String affinitySegment;
+        // Slow GETs are duplicated to a second instance once they pass gateway.hedge's delay; reads only
+        private boolean hedge;
+        // Gives the route its own circuit breaker and a bulkhead of this size instead of sharing the service's, with
+        // calls counted slow only near the route's timeout and kept out of the service's adaptive concurrency limit;
+        // for long-running routes such as bulk uploads
+        private Integer maxConcurrentCalls;
+        // Overrides gateway.rate-limit for this route
+        private RateLimitDefinition rateLimit;
+        
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        
+        public String getPathPrefix() { return pathPrefix; }
+        public void setPathPrefix(String pathPrefix) { this.pathPrefix = pathPrefix; }
+        
+        public String getRewritePrefix() { return rewritePrefix; }
+        public void setRewritePrefix(String rewritePrefix) { this.rewritePrefix = rewritePrefix; }
+        
+        public String getService() { return service; }
+        public void setService(String service) { this.service = service; }
+        
+        public List<String> getMethods() { return methods; }
+        public void setMethods(List<String> methods) { this.methods = methods; }
+        
+        public Duration getTimeout() { return timeout; }
+        public void setTimeout(Duration timeout) { this.timeout = timeout; }
+        
+        public boolean isCoalesce() { return coalesce; }
+        public void setCoalesce(boolean coalesce) { this.coalesce = coalesce; }
+        
+        public Duration getCacheTtl() { return cacheTtl; }
+        public void setCacheTtl(Duration cacheTtl) { this.cacheTtl = cacheTtl; }
+        
+        public List<String> getReadOnlyPaths() { return readOnlyPaths; }
+        public void setReadOnlyPaths(List<String> readOnlyPaths) { this.readOnlyPaths = readOnlyPaths; }
+        
+        public List<String> getPassthroughSuffixes() { return passthroughSuffixes; }
+        public void setPassthroughSuffixes(List<String> passthroughSuffixes) { this.passthroughSuffixes = passthroughSuffixes; }
+        
+        public String getAffinitySegment() { return affinitySegment; }
+        public void setAffinitySegment(String affinitySegment) { this.affinitySegment = affinitySegment; }
+        
+        public boolean isHedge() { return hedge; }
+        public void setHedge(boolean hedge) { this.hedge = hedge; }
+        
+        public Integer getMaxConcurrentCalls() { return maxConcurrentCalls; }
+        public void setMaxConcurrentCalls(Integer maxConcurrentCalls) { this.maxConcurrentCalls = maxConcurrentCalls; }
+        
+        public RateLimitDefinition getRateLimit() { return rateLimit; }
+        public void setRateLimit(RateLimitDefinition rateLimit) { this.rateLimit = rateLimit; }
+    }
+    
+    // Token bucket per principal on the route: bursts of up to capacity, sustained refill-per-second
+    public static class RateLimitDefinition {
+        private Integer capacity;
+        private Integer refillPerSecond;
+        private boolean disabled;
+        
+        public Integer getCapacity() { return capacity; }
+        public void setCapacity(Integer capacity) { this.capacity = capacity; }
+        
+        public Integer getRefillPerSecond() { return refillPerSecond; }
+        public void setRefillPerSecond(Integer refillPerSecond) { this.refillPerSecond = refillPerSecond; }
+        
+        public boolean isDisabled() { return disabled; }
+        public void setDisabled(boolean disabled) { this.disabled = disabled; }
+    }
+}
@@ -1,14 +1,129 @@
 package com.bank.gateway.config;
 
+import com.bank.gateway.service.AbortableRequestFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
+@EnableConfigurationProperties({DownstreamServicesProperties.class, GatewayRoutesProperties.class, AdmissionProperties.class})
 public class RestTemplateConfig {
     
+    private static final Logger logger = LoggerFactory.getLogger(RestTemplateConfig.class);
+    
+    @Value("${gateway.http-client.max-total:200}")
+    private int maxTotal;
+    
+    @Value("${gateway.http-client.default-max-per-route:20}")
+    private int defaultMaxPerRoute;
+    
+    @Value("${gateway.http-client.connect-timeout:1s}")
+    private Duration defaultConnectTimeout;
+    
+    @Value("${gateway.http-client.response-timeout:10s}")
+    private Duration defaultResponseTimeout;
+    
+    @Value("${gateway.http-client.pool-acquire-timeout:2s}")
+    private Duration poolAcquireTimeout;
+    
+    @Value("${gateway.http-client.keep-alive:30s}")
+    private Duration keepAlive;
+    
+    @Value("${gateway.http-client.idle-eviction:30s}")
+    private Duration idleEviction;
+    
+    @Value("${gateway.http-client.validate-after-inactivity:2s}")
+    private Duration validateAfterInactivity;
+    
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager gatewayConnectionManager(DownstreamServicesProperties services) {
+        ConnectionConfig defaultConfig = connectionConfig(defaultConnectTimeout, defaultResponseTimeout);
+        Map<HttpHost, ConnectionConfig> serviceConfigs = new HashMap<>();
+        Map<HttpHost, Integer> serviceLimits = new HashMap<>();
+        
+        // Every instance of a service is its own pool route with the service's limit and timeouts
+        services.forEach((name, service) -> {
+            for (String instance : service.resolveInstances()) {
+                HttpHost host = HttpHost.create(URI.create(instance));
+                serviceConfigs.put(host, connectionConfig(service.getConnectTimeout(), service.getResponseTimeout()));
+                serviceLimits.put(host, service.getMaxConnections());
+                logger.info("Connection pool for {} ({}): max {} connections, connect {}, response {}",
+                        name, host, service.getMaxConnections(), service.getConnectTimeout(), service.getResponseTimeout());
+            }
+        });
+        
+        // Connect and response timeouts are resolved per target host, so each downstream service keeps its own
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(defaultMaxPerRoute)
+                .setConnectionConfigResolver(route -> serviceConfigs.getOrDefault(route.getTargetHost(), defaultConfig))
+                .build();
+        serviceLimits.forEach((host, limit) -> connectionManager.setMaxPerRoute(new HttpRoute(host), limit));
+        return connectionManager;
+    }
+    
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient gatewayHttpClient(PoolingHttpClientConnectionManager gatewayConnectionManager) {
+        TimeValue maxKeepAlive = TimeValue.of(keepAlive);
+        return HttpClients.custom()
+                .setConnectionManager(gatewayConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolAcquireTimeout))
+                        .build())
+                // Honour a shorter Keep-Alive from the server, otherwise cap reuse at the configured keep-alive
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue offered = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return TimeValue.isPositive(offered) && offered.compareTo(maxKeepAlive) < 0 ? offered : maxKeepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+    }
+    
+    @Bean
+    public AbortableRequestFactory gatewayRequestFactory(CloseableHttpClient gatewayHttpClient) {
+        return new AbortableRequestFactory(gatewayHttpClient);
+    }
+    
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(ClientHttpRequestFactory gatewayRequestFactory) {
+        return new RestTemplate(gatewayRequestFactory);
+    }
+    
+    // Publishes httpcomponents.httpclient.pool.{total.max,total.connections,total.pending,route.max.default}
+    @Bean
+    public MeterBinder gatewayConnectionPoolMetrics(PoolingHttpClientConnectionManager gatewayConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(gatewayConnectionManager, "gateway");
+    }
+    
+    private ConnectionConfig connectionConfig(Duration connectTimeout, Duration responseTimeout) {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(responseTimeout))
+                .setValidateAfterInactivity(TimeValue.of(validateAfterInactivity))
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -19,7 +19,7 @@ import java.util.Arrays;
 public class SecurityConfig {
     
     @Autowired
-    private JwtAuthenticationFilter jwtAuthenticationFilter;
+    private GatewayAuthenticationFilter gatewayAuthenticationFilter;
     
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
@@ -32,10 +32,14 @@ public class SecurityConfig {
                 .requestMatchers("/api/customers/register").permitAll()
                 .requestMatchers("/api/customers/login").permitAll()
                 .requestMatchers("/api/employees/login").permitAll()
+                // The summary is one snapshot fetched as an employee and shared by every caller, so only staff see it
+                .requestMatchers("/api/dashboard/**").hasAnyAuthority("EMPLOYEE", "MANAGER")
                 .requestMatchers("/api/**").permitAll() // Temporarily allow all API requests for testing
+                // Instance reloads redirect traffic and the identities it carries, so only managers may use them
+                .requestMatchers("/gateway/admin/**").hasAuthority("MANAGER")
                 .anyRequest().authenticated()
             )
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(gatewayAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
             
         return http.build();
     }
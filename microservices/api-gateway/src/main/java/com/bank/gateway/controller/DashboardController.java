@@ -1,13 +1,19 @@
 package com.bank.gateway.controller;
 
-import com.bank.gateway.dto.DashboardResponse;
+import com.bank.gateway.dto.DashboardSnapshot;
 import com.bank.gateway.service.DashboardService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.TimeUnit;
+
 @RestController
 @RequestMapping("/api/dashboard")
 public class DashboardController {
@@ -16,8 +22,25 @@ public class DashboardController {
     private DashboardService dashboardService;
     
     @GetMapping("/summary")
-    public ResponseEntity<DashboardResponse> getDashboardSummary() {
-        DashboardResponse response = dashboardService.getDashboardSummary();
-        return ResponseEntity.ok(response);
+    public ResponseEntity<byte[]> getDashboardSummary(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        DashboardSnapshot snapshot = dashboardService.getSnapshot();
+        CacheControl cacheControl = CacheControl
+                .maxAge(dashboardService.getRefreshIntervalMs(), TimeUnit.MILLISECONDS)
+                .cachePrivate();
+        
+        if (snapshot.getEtag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getEtag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(cacheControl)
+                .lastModified(snapshot.getBuiltAt())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getBody());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package com.bank.gateway.controller;
+
+import com.bank.gateway.service.DownstreamGuard;
+import com.bank.gateway.service.LoadBalancer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/gateway/admin")
+public class GatewayAdminController {
+    
+    @Autowired
+    private DownstreamGuard downstreamGuard;
+    
+    @Autowired
+    private LoadBalancer loadBalancer;
+    
+    // Circuit breaker state and bulkhead occupancy for every downstream service
+    @GetMapping("/downstreams")
+    public ResponseEntity<List<Map<String, Object>>> getDownstreams() {
+        return ResponseEntity.ok(downstreamGuard.describe());
+    }
+    
+    // Health, ejection and outstanding-request counts per instance of every service
+    @GetMapping("/instances")
+    public ResponseEntity<Map<String, List<Map<String, Object>>>> getInstances() {
+        return ResponseEntity.ok(loadBalancer.describe());
+    }
+    
+    // Replaces a service's instance list at runtime, e.g. ["http://localhost:8083", "http://localhost:8093"]
+    @PutMapping("/services/{service}/instances")
+    public ResponseEntity<?> reloadInstances(@PathVariable String service, @RequestBody List<String> instances) {
+        try {
+            return ResponseEntity.ok(loadBalancer.reload(service, instances));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -4,12 +4,12 @@ import com.bank.gateway.service.GatewayService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:4200")
@@ -20,28 +20,16 @@ public class GatewayController {
     @Autowired
     private GatewayService gatewayService;
     
+    // Body and response are streamed by GatewayService, so nothing is bound or returned here
     @RequestMapping(value = "/api/**", method = {RequestMethod.GET, RequestMethod.POST, 
-                   RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS}, 
-                   produces = "application/json")
-    public ResponseEntity<String> gateway(@RequestBody(required = false) String body,
-                                        HttpServletRequest request) {
-        
-        String path = request.getRequestURI();
-        HttpMethod method = HttpMethod.valueOf(request.getMethod());
-        logger.info("Gateway received {} request to {}", method, path);
-        
-        HttpEntity<String> requestEntity = new HttpEntity<>(body);
-        
-        ResponseEntity<String> response = gatewayService.forwardRequest(path, method, requestEntity, request);
-        
-        // Ensure proper content type header
-        return ResponseEntity.status(response.getStatusCode())
-                .header("Content-Type", "application/json")
-                .body(response.getBody());
+                   RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS})
+    public void gateway(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        logger.info("Gateway received {} request to {}", request.getMethod(), request.getRequestURI());
+        gatewayService.forwardRequest(request, response);
     }
     
     @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("API Gateway is running");
     }
-}
\ No newline at end of file
+}
@@ -1,30 +1,55 @@
 package com.bank.gateway.dto;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class DashboardResponse {
-    private long totalCustomers;
-    private long totalEmployees;
-    private long totalLoanRequests;
-    private double totalBankBalance;
+    private Long totalCustomers;
+    private Long totalEmployees;
+    private Long totalLoanRequests;
+    private Double totalBankBalance;
+    // Per-field outcome; a field that could not be fetched is null and marked here rather than reported as 0
+    private Map<String, FieldStatus> status = new LinkedHashMap<>();
+    private boolean partial;
+    
+    public enum FieldStatus {
+        OK,
+        STALE,
+        UNAVAILABLE
+    }
     
     public DashboardResponse() {}
     
-    public DashboardResponse(long totalCustomers, long totalEmployees, 
-                           long totalLoanRequests, double totalBankBalance) {
+    public DashboardResponse(Long totalCustomers, Long totalEmployees, 
+                           Long totalLoanRequests, Double totalBankBalance) {
         this.totalCustomers = totalCustomers;
         this.totalEmployees = totalEmployees;
         this.totalLoanRequests = totalLoanRequests;
         this.totalBankBalance = totalBankBalance;
     }
     
-    public long getTotalCustomers() { return totalCustomers; }
-    public void setTotalCustomers(long totalCustomers) { this.totalCustomers = totalCustomers; }
+    public Long getTotalCustomers() { return totalCustomers; }
+    public void setTotalCustomers(Long totalCustomers) { this.totalCustomers = totalCustomers; }
+    
+    public Long getTotalEmployees() { return totalEmployees; }
+    public void setTotalEmployees(Long totalEmployees) { this.totalEmployees = totalEmployees; }
     
-    public long getTotalEmployees() { return totalEmployees; }
-    public void setTotalEmployees(long totalEmployees) { this.totalEmployees = totalEmployees; }
+    public Long getTotalLoanRequests() { return totalLoanRequests; }
+    public void setTotalLoanRequests(Long totalLoanRequests) { this.totalLoanRequests = totalLoanRequests; }
     
-    public long getTotalLoanRequests() { return totalLoanRequests; }
-    public void setTotalLoanRequests(long totalLoanRequests) { this.totalLoanRequests = totalLoanRequests; }
+    public Double getTotalBankBalance() { return totalBankBalance; }
+    public void setTotalBankBalance(Double totalBankBalance) { this.totalBankBalance = totalBankBalance; }
     
-    public double getTotalBankBalance() { return totalBankBalance; }
-    public void setTotalBankBalance(double totalBankBalance) { this.totalBankBalance = totalBankBalance; }
-}
\ No newline at end of file
+    public Map<String, FieldStatus> getStatus() { return status; }
+    public void setStatus(Map<String, FieldStatus> status) { this.status = status; }
+    
+    public boolean isPartial() { return partial; }
+    public void setPartial(boolean partial) { this.partial = partial; }
+    
+    public void markField(String field, FieldStatus fieldStatus) {
+        status.put(field, fieldStatus);
+        if (fieldStatus != FieldStatus.OK) {
+            partial = true;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.bank.gateway.dto;
+
+import java.time.Instant;
+
+public class DashboardSnapshot {
+    private final byte[] body;
+    private final String etag;
+    private final Instant builtAt;
+    private final long builtAtNanos;
+    
+    public DashboardSnapshot(byte[] body, String etag) {
+        this.body = body;
+        this.etag = etag;
+        this.builtAt = Instant.now();
+        this.builtAtNanos = System.nanoTime();
+    }
+    
+    public byte[] getBody() { return body; }
+    
+    public String getEtag() { return etag; }
+    
+    public Instant getBuiltAt() { return builtAt; }
+    
+    public long getAgeMillis() {
+        return (System.nanoTime() - builtAtNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,41 @@
+package com.bank.gateway.service;
+
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.URI;
+
+// The gateway's request factory. A request created with a cancellation can be aborted while it waits for response
+// headers, which is how the slower of two hedged calls gives its connection back as soon as the other answers
+public class AbortableRequestFactory extends HttpComponentsClientHttpRequestFactory {
+    
+    // Set only while createRequest runs, on the thread creating the request
+    private static final ThreadLocal<RequestHedger.Cancellation> creating = new ThreadLocal<>();
+    
+    public AbortableRequestFactory(HttpClient httpClient) {
+        super(httpClient);
+    }
+    
+    public ClientHttpRequest createRequest(URI uri, HttpMethod method, RequestHedger.Cancellation cancellation)
+            throws IOException {
+        creating.set(cancellation);
+        try {
+            return createRequest(uri, method);
+        } finally {
+            creating.remove();
+        }
+    }
+    
+    @Override
+    protected void postProcessHttpRequest(ClassicHttpRequest request) {
+        RequestHedger.Cancellation cancellation = creating.get();
+        if (cancellation != null && request instanceof Cancellable) {
+            cancellation.register((Cancellable) request);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.bank.gateway.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-flight cap for one downstream service, learned from response latency in the manner of Netflix concurrency-limits.
+// gradient: compares each sample with the unloaded latency and shrinks the cap as latency climbs above it.
+// aimd: adds one per sample while the cap is in use and backs off multiplicatively on timeouts and errors.
+public class AdaptiveConcurrencyLimit {
+    
+    public enum Algorithm { GRADIENT, AIMD }
+    
+    private final Algorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final int probeInterval;
+    private final int queueSize;
+    private final double backoffRatio;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private volatile int limit;
+    
+    // Guarded by this
+    private double estimatedLimit;
+    private long minRtt;
+    private long samples;
+    
+    public AdaptiveConcurrencyLimit(Algorithm algorithm, int initialLimit, int minLimit, int maxLimit,
+                                    double rttTolerance, double smoothing, int probeInterval, int queueSize,
+                                    double backoffRatio) {
+        this.algorithm = algorithm;
+        this.minLimit = minLimit;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.probeInterval = probeInterval;
+        this.queueSize = queueSize;
+        this.backoffRatio = backoffRatio;
+        this.estimatedLimit = Math.max(minLimit, Math.min(this.maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+    
+    // Returns the in-flight count including this call, or -1 when the cap is reached
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+    
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+    
+    // rttNanos is time to the response headers, so a long body transfer is not mistaken for queueing
+    public synchronized void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+        if (algorithm == Algorithm.AIMD) {
+            if (dropped) {
+                estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+            } else if (inFlightAtStart * 2 >= estimatedLimit) {
+                estimatedLimit = Math.min(maxLimit, estimatedLimit + 1);
+            }
+            limit = (int) estimatedLimit;
+            return;
+        }
+        
+        // Queueing hides the unloaded latency, so every probe-interval samples the cap drops to queue-size (or
+        // min-limit, if that is higher) to let the backend drain, and the minimum is taken afresh from what follows
+        if (++samples % probeInterval == 0) {
+            minRtt = 0;
+            estimatedLimit = Math.max(minLimit, Math.min(estimatedLimit, queueSize));
+            limit = (int) estimatedLimit;
+            return;
+        }
+        // Fast failures such as refused connections say nothing about queueing
+        if (dropped && (minRtt == 0 || rttNanos < minRtt)) {
+            return;
+        }
+        if (minRtt == 0 || rttNanos < minRtt) {
+            minRtt = rttNanos;
+        }
+        
+        // A service using under half the cap is not pushing against it, so its latency is not a signal
+        if (inFlightAtStart < estimatedLimit / 2) {
+            return;
+        }
+        
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * minRtt / rttNanos));
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+    
+    public int getLimit() {
+        return limit;
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    public synchronized double getBaselineRttMillis() {
+        return minRtt / 1_000_000.0;
+    }
+}
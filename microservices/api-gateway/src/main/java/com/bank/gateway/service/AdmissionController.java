@@ -0,0 +1,271 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.AdmissionProperties;
+import com.bank.gateway.config.AdmissionProperties.Priority;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+@Component
+public class AdmissionController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+    
+    private static final Priority[] PRIORITIES = Priority.values();
+    
+    @Autowired
+    private AdmissionProperties properties;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    // Nanosecond clock for queue delay and shedding decisions; waits themselves are always timed in real time
+    private LongSupplier clock = System::nanoTime;
+    
+    // One FIFO per class; a freed slot goes to the oldest waiter of the highest non-empty class
+    private final Map<Priority, ArrayDeque<Waiter>> queues = new EnumMap<>(Priority.class);
+    
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    
+    private final List<Rule> rules = new ArrayList<>();
+    
+    private long targetNanos;
+    
+    private long intervalNanos;
+    
+    // State below is guarded by lock
+    private int inFlight;
+    
+    private int queued;
+    
+    // Classes with this ordinal or higher are shed; PRIORITIES.length means nothing is shed
+    private int shedFrom = PRIORITIES.length;
+    
+    private long aboveTargetDeadline;
+    
+    private long lastShedChange;
+    
+    @PostConstruct
+    public void init() {
+        targetNanos = properties.getTarget().toNanos();
+        intervalNanos = properties.getInterval().toNanos();
+        for (Priority priority : PRIORITIES) {
+            queues.put(priority, new ArrayDeque<>());
+            waitTimers.put(priority, Timer.builder("gateway.admission.wait")
+                    .description("Time spent queued for admission")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        for (AdmissionProperties.Rule rule : properties.getRules()) {
+            rules.add(new Rule(rule));
+        }
+        Gauge.builder("gateway.admission.in.flight", this, controller -> controller.inFlight).register(meterRegistry);
+        Gauge.builder("gateway.admission.queued", this, controller -> controller.queued).register(meterRegistry);
+        Gauge.builder("gateway.admission.shed.classes", this, controller -> PRIORITIES.length - controller.shedFrom)
+                .register(meterRegistry);
+    }
+    
+    // Lets tests drive the sojourn and shedding logic from their own clock
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+    
+    public Priority classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+        for (Rule rule : rules) {
+            if (rule.matches(path, method)) {
+                return rule.priority;
+            }
+        }
+        return properties.getDefaultPriority();
+    }
+    
+    // Blocks until a slot is free; throws RejectedException when the request's class is being shed or it waits too long
+    public void admit(Priority priority) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        
+        Waiter waiter = null;
+        lock.lock();
+        try {
+            long now = clock.getAsLong();
+            if (inFlight < properties.getMaxConcurrent() && queued == 0) {
+                inFlight++;
+                onSojourn(0, now);
+                return;
+            }
+            if (priority.ordinal() >= shedFrom) {
+                throw reject(priority, "shed", "Gateway overloaded, shedding " + priority.name().toLowerCase() + " requests");
+            }
+            // Queued requests hold servlet threads, so only critical ones may queue past the bound
+            if (priority != Priority.CRITICAL && queued >= properties.getMaxQueue()) {
+                throw reject(priority, "queue-full", "Gateway admission queue is full");
+            }
+            
+            waiter = new Waiter(now, lock.newCondition());
+            queues.get(priority).addLast(waiter);
+            queued++;
+            
+            long remaining = properties.getMaxWait().getOrDefault(priority, properties.getInterval()).toNanos();
+            while (!waiter.granted && !waiter.shed && remaining > 0) {
+                remaining = waiter.condition.awaitNanos(remaining);
+            }
+            if (waiter.granted) {
+                waitTimers.get(priority).record(clock.getAsLong() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+                return;
+            }
+            
+            if (!waiter.shed) {
+                queues.get(priority).remove(waiter);
+                queued--;
+                // A timeout means the queue stayed over target for this whole wait
+                long timedOutAt = clock.getAsLong();
+                onSojourn(timedOutAt - waiter.enqueuedAt, timedOutAt);
+                throw reject(priority, "timeout", "Timed out waiting for gateway admission");
+            }
+            throw reject(priority, "shed", "Gateway overloaded, shedding " + priority.name().toLowerCase() + " requests");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (waiter != null && waiter.granted) {
+                // The slot was handed over as the interrupt arrived; pass it on
+                release();
+            } else if (waiter != null && queues.get(priority).remove(waiter)) {
+                queued--;
+            }
+            throw reject(priority, "interrupted", "Interrupted waiting for gateway admission");
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void release() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        
+        lock.lock();
+        try {
+            for (Priority priority : PRIORITIES) {
+                Waiter next = queues.get(priority).pollFirst();
+                if (next != null) {
+                    // The slot passes straight to the waiter, so inFlight is unchanged
+                    queued--;
+                    next.granted = true;
+                    long now = clock.getAsLong();
+                    onSojourn(now - next.enqueuedAt, now);
+                    next.condition.signal();
+                    return;
+                }
+            }
+            inFlight--;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // CoDel-style control: queue delay that stays above target for a full interval sheds the lowest unshed class,
+    // and each interval spent back under target restores one. Under sustained overload this flips every few
+    // intervals, so transitions are logged at debug and watched through gateway.admission.shed.classes
+    private void onSojourn(long sojournNanos, long now) {
+        if (sojournNanos < targetNanos) {
+            aboveTargetDeadline = 0;
+            if (shedFrom < PRIORITIES.length && now - lastShedChange >= intervalNanos) {
+                logger.debug("Admission queue delay back under target, no longer shedding {} requests",
+                        PRIORITIES[shedFrom].name().toLowerCase());
+                shedFrom++;
+                lastShedChange = now;
+            }
+        } else if (aboveTargetDeadline == 0) {
+            aboveTargetDeadline = now + intervalNanos;
+        } else if (now - aboveTargetDeadline >= 0 && shedFrom > 1) {
+            shedFrom--;
+            aboveTargetDeadline = now + intervalNanos;
+            lastShedChange = now;
+            logger.debug("Admission queue delay {} ms over target, shedding {} requests",
+                    TimeUnit.NANOSECONDS.toMillis(sojournNanos), PRIORITIES[shedFrom].name().toLowerCase());
+            shedQueued();
+        }
+    }
+    
+    private void shedQueued() {
+        for (int i = shedFrom; i < PRIORITIES.length; i++) {
+            ArrayDeque<Waiter> queue = queues.get(PRIORITIES[i]);
+            for (Waiter waiter : queue) {
+                waiter.shed = true;
+                waiter.condition.signal();
+            }
+            queued -= queue.size();
+            queue.clear();
+        }
+    }
+    
+    private DownstreamGuard.RejectedException reject(Priority priority, String reason, String message) {
+        meterRegistry.counter("gateway.admission.rejected",
+                "priority", priority.name().toLowerCase(), "reason", reason).increment();
+        return new DownstreamGuard.RejectedException(message, 1);
+    }
+    
+    private static class Waiter {
+        private final long enqueuedAt;
+        private final Condition condition;
+        private boolean granted;
+        private boolean shed;
+        
+        Waiter(long enqueuedAt, Condition condition) {
+            this.enqueuedAt = enqueuedAt;
+            this.condition = condition;
+        }
+    }
+    
+    private static class Rule {
+        private final String path;
+        private final boolean prefix;
+        private final Set<String> methods = new HashSet<>();
+        private final Priority priority;
+        
+        Rule(AdmissionProperties.Rule rule) {
+            if (rule.getPath() == null || rule.getPriority() == null) {
+                throw new RuntimeException("Admission rules need a path and a priority");
+            }
+            this.prefix = rule.getPath().endsWith("/**");
+            this.path = prefix ? rule.getPath().substring(0, rule.getPath().length() - 3) : rule.getPath();
+            for (String method : rule.getMethods()) {
+                methods.add(method.toUpperCase());
+            }
+            this.priority = rule.getPriority();
+        }
+        
+        boolean matches(String requestPath, String method) {
+            if (!methods.isEmpty() && !methods.contains(method)) {
+                return false;
+            }
+            if (!prefix) {
+                return requestPath.equals(path);
+            }
+            return requestPath.startsWith(path)
+                    && (requestPath.length() == path.length() || requestPath.charAt(path.length()) == '/');
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.bank.gateway.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Immutable hash ring with virtual nodes: adding or removing a node only moves the keys on its own arcs
+public class ConsistentHashRing<T> {
+    
+    private final long[] points;
+    private final Object[] owners;
+    
+    public ConsistentHashRing(List<T> nodes, Function<T, String> nodeKey, int virtualNodes) {
+        long[] unsortedPoints = new long[nodes.size() * virtualNodes];
+        int[] nodeIndexes = new int[unsortedPoints.length];
+        int n = 0;
+        for (int node = 0; node < nodes.size(); node++) {
+            String key = nodeKey.apply(nodes.get(node));
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                unsortedPoints[n] = hash(key + "#" + replica);
+                nodeIndexes[n++] = node;
+            }
+        }
+        
+        // Sort points and carry each owner along with its point
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(unsortedPoints[a], unsortedPoints[b]));
+        
+        this.points = new long[n];
+        this.owners = new Object[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = unsortedPoints[order[i]];
+            owners[i] = nodes.get(nodeIndexes[order[i]]);
+        }
+    }
+    
+    public T locate(String key) {
+        return locate(key, node -> true);
+    }
+    
+    // First node clockwise from the key that passes the filter, so a node out of rotation only sheds its own keys
+    @SuppressWarnings("unchecked")
+    public T locate(String key, Predicate<T> usable) {
+        if (points.length == 0) {
+            return null;
+        }
+        int start = Arrays.binarySearch(points, hash(key));
+        if (start < 0) {
+            start = -start - 1;
+        }
+        
+        for (int i = 0; i < points.length; i++) {
+            T owner = (T) owners[(start + i) % points.length];
+            if (usable.test(owner)) {
+                return owner;
+            }
+        }
+        return null;
+    }
+    
+    // FNV-1a over the characters, then the murmur3 finalizer to spread similar keys across the whole ring
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,8 +1,13 @@
 package com.bank.gateway.service;
 
 import com.bank.gateway.dto.DashboardResponse;
+import com.bank.gateway.dto.DashboardResponse.FieldStatus;
+import com.bank.gateway.dto.DashboardSnapshot;
+import com.bank.security.IdentityAssertion;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,19 +17,46 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
 @Service
 public class DashboardService {
     
     private static final Logger logger = LoggerFactory.getLogger(DashboardService.class);
     
+    // The snapshot is shared by all callers, so backends are called as the dashboard itself rather than on behalf of
+    // a user; loan counts are restricted to employees, and so is the dashboard (see SecurityConfig)
+    private static final String DASHBOARD_PRINCIPAL = "api-gateway-dashboard";
+    
+    private static final List<String> DASHBOARD_ROLES = List.of("EMPLOYEE");
+    
     @Autowired
     private RestTemplate restTemplate;
     
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private IdentityAssertion identityAssertion;
+    
     @Value("${services.customer.url}")
     private String customerServiceUrl;
     
@@ -37,89 +69,261 @@ public class DashboardService {
     @Value("${services.loan.url}")
     private String loanServiceUrl;
     
-    public DashboardResponse getDashboardSummary() {
-        DashboardResponse dashboard = new DashboardResponse();
+    @Value("${dashboard.snapshot.refresh-interval-ms:5000}")
+    private long refreshIntervalMs;
+    
+    @Value("${dashboard.snapshot.max-staleness-ms:15000}")
+    private long maxStalenessMs;
+    
+    @Value("${dashboard.fanout.call-timeout-ms:2000}")
+    private long callTimeoutMs;
+    
+    @Value("${dashboard.fanout.deadline-ms:3000}")
+    private long deadlineMs;
+    
+    private final AtomicReference<Long> lastCustomers = new AtomicReference<>();
+    
+    private final AtomicReference<Long> lastEmployees = new AtomicReference<>();
+    
+    private final AtomicReference<Long> lastLoans = new AtomicReference<>();
+    
+    private final AtomicReference<Double> lastBalance = new AtomicReference<>();
+    
+    private volatile DashboardSnapshot snapshot;
+    
+    // The one refresh currently running; concurrent callers wait on it instead of starting their own fan-out
+    private final AtomicReference<CompletableFuture<DashboardSnapshot>> refreshInFlight = new AtomicReference<>();
+    
+    private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dashboard-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Bounded so a hung backend cannot pile up threads; overflow is rejected and shows as STALE/UNAVAILABLE
+    private final ThreadPoolExecutor fanoutExecutor;
+    
+    public DashboardService(@Value("${dashboard.fanout.threads:8}") int threads,
+                            @Value("${dashboard.fanout.queue-capacity:32}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fanoutExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-fanout-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.fanoutExecutor.allowCoreThreadTimeOut(true);
+    }
+    
+    @PostConstruct
+    public void startRefresh() {
+        refreshScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refreshSnapshot();
+            } catch (Exception e) {
+                logger.error("Dashboard snapshot refresh failed: {}", e.getMessage());
+            }
+        }, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    // Requests are served from the pre-serialised snapshot; the backends are only called when it is missing or too old
+    public DashboardSnapshot getSnapshot() {
+        DashboardSnapshot current = snapshot;
+        if (current != null && current.getAgeMillis() <= maxStalenessMs) {
+            return current;
+        }
         
         try {
-            long totalCustomers = getCustomerCount();
-            dashboard.setTotalCustomers(totalCustomers);
+            return refreshSnapshot();
         } catch (Exception e) {
-            logger.error("Error fetching customer count: {}", e.getMessage());
-            dashboard.setTotalCustomers(0);
+            if (current != null) {
+                logger.warn("Serving dashboard snapshot {} ms old, refresh failed: {}", current.getAgeMillis(),
+                        e.getMessage());
+                return current;
+            }
+            throw e;
+        }
+    }
+    
+    public long getRefreshIntervalMs() {
+        return refreshIntervalMs;
+    }
+    
+    private DashboardSnapshot refreshSnapshot() {
+        CompletableFuture<DashboardSnapshot> refresh = new CompletableFuture<>();
+        CompletableFuture<DashboardSnapshot> running = refreshInFlight.compareAndExchange(null, refresh);
+        if (running != null) {
+            return running.join();
         }
         
         try {
-            long totalEmployees = getEmployeeCount();
-            dashboard.setTotalEmployees(totalEmployees);
-        } catch (Exception e) {
-            logger.error("Error fetching employee count: {}", e.getMessage());
-            dashboard.setTotalEmployees(0);
+            DashboardSnapshot built = buildSnapshot(getDashboardSummary());
+            snapshot = built;
+            refresh.complete(built);
+            return built;
+        } catch (RuntimeException e) {
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            refreshInFlight.set(null);
         }
-        
+    }
+    
+    private DashboardSnapshot buildSnapshot(DashboardResponse dashboard) {
         try {
-            long totalLoans = getLoanCount();
-            dashboard.setTotalLoanRequests(totalLoans);
+            byte[] body = objectMapper.writeValueAsBytes(dashboard);
+            return new DashboardSnapshot(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
         } catch (Exception e) {
-            logger.error("Error fetching loan count: {}", e.getMessage());
-            dashboard.setTotalLoanRequests(0);
+            throw new RuntimeException("Failed to serialise dashboard snapshot: " + e.getMessage(), e);
         }
+    }
+    
+    public DashboardResponse getDashboardSummary() {
+        DashboardResponse dashboard = new DashboardResponse();
+        
+        // All four calls start together, so the dashboard costs the slowest call rather than the sum
+        FanoutCall<Long> customers = submit(this::getCustomerCount);
+        FanoutCall<Long> employees = submit(this::getEmployeeCount);
+        FanoutCall<Long> loans = submit(this::getLoanCount);
+        FanoutCall<Double> balance = submit(this::getTotalBankBalance);
+        
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        
+        collect(dashboard, "totalCustomers", customers, deadline, lastCustomers, dashboard::setTotalCustomers);
+        collect(dashboard, "totalEmployees", employees, deadline, lastEmployees, dashboard::setTotalEmployees);
+        collect(dashboard, "totalLoanRequests", loans, deadline, lastLoans, dashboard::setTotalLoanRequests);
+        collect(dashboard, "totalBankBalance", balance, deadline, lastBalance, dashboard::setTotalBankBalance);
         
+        logger.debug("Dashboard assembled in {} ms, partial: {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), dashboard.isPartial());
+        return dashboard;
+    }
+    
+    private <T> FanoutCall<T> submit(Callable<T> call) {
+        FanoutCall<T> fanoutCall = new FanoutCall<>();
         try {
-            double totalBalance = getTotalBankBalance();
-            dashboard.setTotalBankBalance(totalBalance);
-        } catch (Exception e) {
-            logger.error("Error fetching total balance: {}", e.getMessage());
-            dashboard.setTotalBankBalance(0.0);
+            fanoutCall.future = fanoutExecutor.submit(() -> {
+                fanoutCall.startedAt = System.nanoTime();
+                return call.call();
+            });
+        } catch (RejectedExecutionException e) {
+            fanoutCall.future = CompletableFuture.failedFuture(e);
+        }
+        return fanoutCall;
+    }
+    
+    // Each call gets call-timeout-ms from the moment a fanout thread picks it up, so a call that sat in the queue
+    // is not charged for the wait; the overall deadline still caps every call. A failed or late call falls back to
+    // the last value that was fetched successfully, marked STALE
+    private <T> void collect(DashboardResponse dashboard, String field, FanoutCall<T> call, long deadline,
+                             AtomicReference<T> lastKnown, Consumer<T> setter) {
+        long callTimeout = TimeUnit.MILLISECONDS.toNanos(callTimeoutMs);
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long startedAt = call.startedAt;
+                // Not started yet: wait at most one call timeout, then look again in case it has started since
+                long callDeadline = Math.min(deadline, (startedAt != 0 ? startedAt : now) + callTimeout);
+                try {
+                    T value = call.future.get(Math.max(0, callDeadline - now), TimeUnit.NANOSECONDS);
+                    lastKnown.set(value);
+                    setter.accept(value);
+                    dashboard.markField(field, FieldStatus.OK);
+                    return;
+                } catch (TimeoutException e) {
+                    if (call.startedAt != 0 && call.startedAt + callTimeout <= System.nanoTime()
+                            || deadline <= System.nanoTime()) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (TimeoutException e) {
+            call.future.cancel(true);
+            logger.warn("Timed out fetching {} for dashboard", field);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.future.cancel(true);
+        } catch (ExecutionException e) {
+            logger.error("Error fetching {}: {}", field, e.getCause().getMessage());
         }
         
-        return dashboard;
+        T previous = lastKnown.get();
+        if (previous != null) {
+            setter.accept(previous);
+            dashboard.markField(field, FieldStatus.STALE);
+        } else {
+            dashboard.markField(field, FieldStatus.UNAVAILABLE);
+        }
+    }
+    
+    // A fan-out call and the System.nanoTime() at which a thread started running it; 0 while still queued
+    private static class FanoutCall<T> {
+        
+        private Future<T> future;
+        
+        private volatile long startedAt;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        refreshScheduler.shutdownNow();
+        fanoutExecutor.shutdownNow();
+    }
+    
+    // Signed per call, so the assertion is always fresh within its short TTL
+    private HttpEntity<Void> dashboardRequest() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(IdentityAssertion.HEADER,
+                identityAssertion.sign(DASHBOARD_PRINCIPAL, DASHBOARD_ROLES, new Date(Long.MAX_VALUE)));
+        return new HttpEntity<>(headers);
     }
     
-    private long getCustomerCount() {
+    private Long getCustomerCount() {
         String url = customerServiceUrl + "/customers/count";
         logger.info("Fetching customer count from: {}", url);
         
         ResponseEntity<Long> response = restTemplate.exchange(
-            url, HttpMethod.GET, null, Long.class);
+            url, HttpMethod.GET, dashboardRequest(), Long.class);
         
-        return response.getBody() != null ? response.getBody() : 0;
+        return response.getBody() != null ? response.getBody() : 0L;
     }
     
-    private long getEmployeeCount() {
+    private Long getEmployeeCount() {
         String url = employeeServiceUrl + "/employees/count";
         logger.info("Fetching employee count from: {}", url);
         
         ResponseEntity<Long> response = restTemplate.exchange(
-            url, HttpMethod.GET, null, Long.class);
+            url, HttpMethod.GET, dashboardRequest(), Long.class);
         
-        return response.getBody() != null ? response.getBody() : 0;
+        return response.getBody() != null ? response.getBody() : 0L;
     }
     
-    private long getLoanCount() {
+    private Long getLoanCount() {
         String url = loanServiceUrl + "/loans/count";
         logger.info("Fetching loan count from: {}", url);
         
+        ResponseEntity<String> response = restTemplate.exchange(
+            url, HttpMethod.GET, dashboardRequest(), String.class);
+        
+        if (response.getBody() == null) {
+            return 0L;
+        }
+        
         try {
-            ResponseEntity<String> response = restTemplate.exchange(
-                url, HttpMethod.GET, null, String.class);
-            
-            if (response.getBody() != null) {
-                JsonNode jsonNode = objectMapper.readTree(response.getBody());
-                return jsonNode.get("count").asLong(0);
-            }
+            JsonNode jsonNode = objectMapper.readTree(response.getBody());
+            return jsonNode.get("count").asLong(0);
         } catch (Exception e) {
-            logger.error("Error parsing loan count response: {}", e.getMessage());
+            throw new RuntimeException("Error parsing loan count response: " + e.getMessage(), e);
         }
-        
-        return 0;
     }
     
-    private double getTotalBankBalance() {
+    private Double getTotalBankBalance() {
         String url = transactionServiceUrl + "/transactions/total-balance";
         logger.info("Fetching total balance from: {}", url);
         
         ResponseEntity<Double> response = restTemplate.exchange(
-            url, HttpMethod.GET, null, Double.class);
+            url, HttpMethod.GET, dashboardRequest(), Double.class);
         
         return response.getBody() != null ? response.getBody() : 0.0;
     }
@@ -0,0 +1,366 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.DownstreamServicesProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class DownstreamGuard {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DownstreamGuard.class);
+    
+    @Autowired
+    private DownstreamServicesProperties services;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private LoadBalancer loadBalancer;
+    
+    @Autowired
+    private RouteTable routeTable;
+    
+    @Value("${gateway.circuit-breaker.sliding-window-size:20}")
+    private int slidingWindowSize;
+    
+    @Value("${gateway.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+    
+    @Value("${gateway.circuit-breaker.failure-rate-threshold:50}")
+    private float failureRateThreshold;
+    
+    @Value("${gateway.circuit-breaker.slow-call-rate-threshold:50}")
+    private float slowCallRateThreshold;
+    
+    @Value("${gateway.circuit-breaker.slow-call-duration:2s}")
+    private Duration slowCallDuration;
+    
+    @Value("${gateway.circuit-breaker.wait-in-open:10s}")
+    private Duration waitInOpen;
+    
+    @Value("${gateway.circuit-breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+    
+    @Value("${gateway.concurrency-limit.enabled:true}")
+    private boolean adaptiveLimitEnabled;
+    
+    @Value("${gateway.concurrency-limit.algorithm:gradient}")
+    private String adaptiveAlgorithm;
+    
+    @Value("${gateway.concurrency-limit.initial-limit:20}")
+    private int initialLimit;
+    
+    @Value("${gateway.concurrency-limit.min-limit:2}")
+    private int minLimit;
+    
+    @Value("${gateway.concurrency-limit.rtt-tolerance:1.5}")
+    private double rttTolerance;
+    
+    @Value("${gateway.concurrency-limit.smoothing:0.2}")
+    private double smoothing;
+    
+    @Value("${gateway.concurrency-limit.probe-interval:1000}")
+    private int probeInterval;
+    
+    @Value("${gateway.concurrency-limit.queue-size:4}")
+    private int queueSize;
+    
+    @Value("${gateway.concurrency-limit.backoff-ratio:0.9}")
+    private double backoffRatio;
+    
+    @Value("${gateway.concurrency-limit.timeout:2s}")
+    private Duration limitTimeout;
+    
+    private CircuitBreakerRegistry circuitBreakers;
+    
+    private BulkheadRegistry bulkheads;
+    
+    // Services first, then routes with their own guard, in the order describe() lists them
+    private final List<String> guardKeys = new ArrayList<>();
+    
+    private final Map<String, Long> openedAt = new ConcurrentHashMap<>();
+    
+    private final Map<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void initGuards() {
+        // Failure and slow-call rates are taken over the last sliding-window-size calls to each service
+        CircuitBreakerConfig serviceConfig = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .waitDurationInOpenState(waitInOpen)
+                .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+                .build();
+        circuitBreakers = CircuitBreakerRegistry.of(serviceConfig);
+        bulkheads = BulkheadRegistry.ofDefaults();
+        
+        services.forEach((name, service) -> {
+            register(name, serviceConfig, service.getMaxConcurrentCalls());
+            
+            if (adaptiveLimitEnabled) {
+                // The bulkhead size stays the hard ceiling; the adaptive limit tracks what the service can take below it
+                AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(
+                        AdaptiveConcurrencyLimit.Algorithm.valueOf(adaptiveAlgorithm.toUpperCase()),
+                        initialLimit, minLimit, service.getMaxConcurrentCalls(),
+                        rttTolerance, smoothing, probeInterval, queueSize, backoffRatio);
+                limits.put(name, limit);
+                Gauge.builder("gateway.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                        .tag("service", name)
+                        .register(meterRegistry);
+                Gauge.builder("gateway.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                        .tag("service", name)
+                        .register(meterRegistry);
+            }
+        });
+        
+        // A long-running route's calls would all count as slow against the service's threshold, and hold its
+        // bulkhead slots for minutes; they get a breaker that only counts calls near the route's timeout as slow
+        for (RouteTable.Route route : routeTable.getRoutes()) {
+            if (route.getMaxConcurrentCalls() != null) {
+                register(route.getGuardKey(), CircuitBreakerConfig.from(serviceConfig)
+                        .slowCallDurationThreshold(route.getTimeout().multipliedBy(9).dividedBy(10))
+                        .build(), route.getMaxConcurrentCalls());
+            }
+        }
+        
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+    }
+    
+    private void register(String key, CircuitBreakerConfig config, int maxConcurrentCalls) {
+        guardKeys.add(key);
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(key, config);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            logger.warn("Circuit breaker for {}: {}", key, event.getStateTransition());
+            if (event.getStateTransition().getToState() == CircuitBreaker.State.OPEN) {
+                openedAt.put(key, System.nanoTime());
+            }
+        });
+        // Fail fast when the service's share of gateway threads is used up instead of queueing behind it
+        bulkheads.bulkhead(key, BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+    }
+    
+    // Executes the call inside the route's bulkhead and circuit breaker (the service's, unless the route has its own)
+    // and, for routes sharing the service's guard, its adaptive limit; the bulkhead and limit slots and the
+    // instance's outstanding count are held until the body is closed
+    public ClientHttpResponse execute(RouteTable.Route route, LoadBalancer.Instance instance,
+                                      ClientHttpRequest request) throws IOException {
+        return execute(route, instance, request, null);
+    }
+    
+    // A hedged call the gateway aborted because the other attempt answered first is neither a failure nor a
+    // latency sample, so losing a race never trips a breaker or ejects the slower instance
+    public ClientHttpResponse execute(RouteTable.Route route, LoadBalancer.Instance instance,
+                                      ClientHttpRequest request, RequestHedger.Cancellation cancellation)
+            throws IOException {
+        String service = route.getService();
+        String guardKey = route.getGuardKey();
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(guardKey);
+        Bulkhead bulkhead = bulkheads.bulkhead(guardKey);
+        
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new RejectedException(guardKey + " is unavailable (circuit open)", retryAfterSeconds(guardKey));
+        }
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            throw new RejectedException(guardKey + " is at its concurrency limit", 1);
+        }
+        // A route with its own guard is long-running: its round trips say nothing about the service's ordinary
+        // latency and would drag the shared limit down, so it is bounded by its own bulkhead only
+        AdaptiveConcurrencyLimit limit = route.getMaxConcurrentCalls() == null ? limits.get(service) : null;
+        int inFlight = limit != null ? limit.tryAcquire() : 0;
+        if (inFlight < 0) {
+            circuitBreaker.releasePermission();
+            bulkhead.onComplete();
+            meterRegistry.counter("gateway.concurrency.rejected", "service", service).increment();
+            throw new RejectedException(service + " is at its adaptive concurrency limit (" + limit.getLimit() + ")", 1);
+        }
+        
+        loadBalancer.onStart(instance);
+        long started = System.nanoTime();
+        try {
+            ClientHttpResponse response = request.execute();
+            long elapsed = System.nanoTime() - started;
+            int status;
+            try {
+                status = response.getStatusCode().value();
+            } catch (IOException | RuntimeException e) {
+                // Nobody else holds the response yet, so its connection is only freed here
+                response.close();
+                throw e;
+            }
+            if (status >= 500) {
+                circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, new IOException(service + " answered " + status));
+                loadBalancer.onFailure(instance);
+            } else {
+                circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                loadBalancer.onSuccess(instance);
+            }
+            if (limit != null) {
+                limit.onSample(elapsed, inFlight, status >= 500 || elapsed > limitTimeout.toNanos());
+            }
+            return new GuardedResponse(response, bulkhead, limit, loadBalancer, instance);
+        } catch (IOException | RuntimeException e) {
+            long elapsed = System.nanoTime() - started;
+            if (cancellation != null && cancellation.isCancelled()) {
+                circuitBreaker.releasePermission();
+                meterRegistry.counter("gateway.hedge.aborted", "route", route.getId()).increment();
+            } else {
+                circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, e);
+                loadBalancer.onFailure(instance);
+                if (limit != null) {
+                    limit.onSample(elapsed, inFlight, true);
+                }
+            }
+            loadBalancer.onComplete(instance);
+            bulkhead.onComplete();
+            if (limit != null) {
+                limit.release();
+            }
+            throw e;
+        }
+    }
+    
+    public List<Map<String, Object>> describe() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (String service : guardKeys) {
+            CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(service);
+            CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+            Bulkhead bulkhead = bulkheads.bulkhead(service);
+            
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("service", service);
+            state.put("state", circuitBreaker.getState());
+            state.put("failureRate", metrics.getFailureRate());
+            state.put("slowCallRate", metrics.getSlowCallRate());
+            state.put("bufferedCalls", metrics.getNumberOfBufferedCalls());
+            state.put("failedCalls", metrics.getNumberOfFailedCalls());
+            state.put("slowCalls", metrics.getNumberOfSlowCalls());
+            state.put("notPermittedCalls", metrics.getNumberOfNotPermittedCalls());
+            state.put("concurrentCalls", bulkhead.getBulkheadConfig().getMaxConcurrentCalls()
+                    - bulkhead.getMetrics().getAvailableConcurrentCalls());
+            state.put("maxConcurrentCalls", bulkhead.getBulkheadConfig().getMaxConcurrentCalls());
+            AdaptiveConcurrencyLimit limit = limits.get(service);
+            if (limit != null) {
+                state.put("adaptiveLimit", limit.getLimit());
+                state.put("adaptiveInFlight", limit.getInFlight());
+                state.put("baselineRttMillis", limit.getBaselineRttMillis());
+            }
+            if (circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+                state.put("retryAfterSeconds", retryAfterSeconds(service));
+            }
+            result.add(state);
+        }
+        return result;
+    }
+    
+    private long retryAfterSeconds(String service) {
+        Long opened = openedAt.get(service);
+        if (opened == null) {
+            return waitInOpen.toSeconds();
+        }
+        long remaining = waitInOpen.toNanos() - (System.nanoTime() - opened);
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+    
+    public static class RejectedException extends RuntimeException {
+        private final long retryAfterSeconds;
+        
+        public RejectedException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+        
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+    
+    private static class GuardedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Bulkhead bulkhead;
+        private final AdaptiveConcurrencyLimit limit;
+        private final LoadBalancer loadBalancer;
+        private final LoadBalancer.Instance instance;
+        private boolean closed;
+        
+        GuardedResponse(ClientHttpResponse delegate, Bulkhead bulkhead, AdaptiveConcurrencyLimit limit,
+                        LoadBalancer loadBalancer, LoadBalancer.Instance instance) {
+            this.delegate = delegate;
+            this.bulkhead = bulkhead;
+            this.limit = limit;
+            this.loadBalancer = loadBalancer;
+            this.instance = instance;
+        }
+        
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+        
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+        
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+        
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+        
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    delegate.close();
+                } finally {
+                    loadBalancer.onComplete(instance);
+                    bulkhead.onComplete();
+                    if (limit != null) {
+                        limit.release();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,104 +1,413 @@
 package com.bank.gateway.service;
 
+import com.bank.security.IdentityAssertion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class GatewayService {
     
     private static final Logger logger = LoggerFactory.getLogger(GatewayService.class);
     
+    // Connection-scoped headers that must not be relayed by a proxy (RFC 9110 section 7.6.1)
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "host", "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade");
+    
     @Autowired
-    private RestTemplate restTemplate;
+    private RouteTable routeTable;
     
-    @Value("${services.customer.url}")
-    private String customerServiceUrl;
+    @Autowired
+    private RequestCoalescer requestCoalescer;
     
-    @Value("${services.employee.url}")
-    private String employeeServiceUrl;
+    @Value("${gateway.proxy.buffer-size:8192}")
+    private int bufferSize;
     
-    @Value("${services.transaction.url}")
-    private String transactionServiceUrl;
+    @Autowired
+    private ResponseCache responseCache;
     
-    @Value("${services.loan.url}")
-    private String loanServiceUrl;
+    @Autowired
+    private DownstreamGuard downstreamGuard;
     
-    public ResponseEntity<String> forwardRequest(String path, HttpMethod method, 
-                                               HttpEntity<String> requestEntity, 
-                                               HttpServletRequest request) {
-        try {
-            String targetUrl = determineTargetUrl(path);
-            if (targetUrl == null) {
-                logger.error("Unable to route request to path: {}", path);
-                return new ResponseEntity<>("Service not found", HttpStatus.NOT_FOUND);
+    @Autowired
+    private LoadBalancer loadBalancer;
+    
+    @Autowired
+    private RateLimiter rateLimiter;
+    
+    @Autowired
+    private AdmissionController admissionController;
+    
+    @Autowired
+    private RequestHedger requestHedger;
+    
+    @Value("${gateway.proxy.max-buffered-body-bytes:1048576}")
+    private int maxBufferedBodyBytes;
+    
+    @Value("${gateway.coalesce.max-wait:30s}")
+    private Duration coalesceMaxWait;
+    
+    // One copy buffer per servlet thread, reused for every request and response body it proxies
+    private final ThreadLocal<byte[]> copyBuffer = ThreadLocal.withInitial(() -> new byte[bufferSize]);
+    
+    // Pipes the request body to the service and the service's response back without buffering either in memory
+    public void forwardRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getRequestURI();
+        HttpMethod method = HttpMethod.valueOf(request.getMethod());
+        
+        RouteTable.Route route = routeTable.resolve(path, method);
+        if (route == null) {
+            logger.error("Unable to route request to path: {}", path);
+            writeError(response, HttpStatus.NOT_FOUND, "Service not found");
+            return;
+        }
+        if (route == RouteTable.METHOD_NOT_ALLOWED) {
+            writeError(response, HttpStatus.METHOD_NOT_ALLOWED, "Method " + method + " not allowed on " + path);
+            return;
+        }
+        
+        RateLimiter.Decision decision = rateLimiter.acquire(route, request);
+        if (decision != null) {
+            response.setHeader("X-RateLimit-Limit", String.valueOf(decision.getLimit()));
+            response.setHeader("X-RateLimit-Remaining", String.valueOf(decision.getRemaining()));
+            if (!decision.isAllowed()) {
+                logger.warn("Rate limited {} {}", method, path);
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((decision.getRetryAfterMillis() + 999) / 1000));
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+                response.getOutputStream().write("Rate limit exceeded".getBytes(StandardCharsets.UTF_8));
+                return;
             }
+        }
+        
+        // The instance is picked per downstream call, so cache and coalescing keys only see the service-relative target
+        String target = route.targetPath(path)
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        
+        // Admission comes after rate limiting, so a single flooding client is turned away before it can take queue slots
+        boolean admitted = false;
+        try {
+            admissionController.admit(admissionController.classify(request));
+            admitted = true;
             
-            // Remove /api prefix: /api/customers/login -> /customers/login
-            String servicePath = path.substring(4); // Remove "/api"
-            String fullUrl = targetUrl + servicePath;
-            logger.info("Forwarding {} {} to {}", method, path, fullUrl);
-            
-            HttpHeaders headers = createForwardingHeaders(request);
-            if (requestEntity.getBody() != null) {
-                headers.setContentType(MediaType.APPLICATION_JSON);
+            if (method == HttpMethod.GET && (route.isCoalesce() || route.getCacheTtl() != null || route.isHedge())
+                    && !route.isPassthrough(target)) {
+                forwardBufferedGet(route, target, request, response);
+            } else {
+                int status = proxy(route, target, method, request, response);
+                if (route.getCacheTtl() != null && isWrite(method) && !route.isReadOnly(target)
+                        && status >= 200 && status < 300) {
+                    responseCache.invalidate(route, target, method);
+                }
             }
             
-            HttpEntity<String> forwardEntity = new HttpEntity<>(requestEntity.getBody(), headers);
-            
-            ResponseEntity<String> response = restTemplate.exchange(fullUrl, method, forwardEntity, String.class);
-            logger.info("Successfully forwarded request. Response status: {}", response.getStatusCode());
-            return response;
-            
-        } catch (org.springframework.web.client.HttpClientErrorException e) {
-            logger.error("Client error forwarding request to {}: {} - {}", path, e.getStatusCode(), e.getResponseBodyAsString());
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        } catch (org.springframework.web.client.HttpServerErrorException e) {
-            logger.error("Server error forwarding request to {}: {} - {}", path, e.getStatusCode(), e.getResponseBodyAsString());
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        } catch (Exception e) {
-            logger.error("Error forwarding request to {}: {}", path, e.getMessage(), e);
-            return new ResponseEntity<>("Gateway error: " + e.getMessage(), 
-                                      HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-    }
-    
-    private String determineTargetUrl(String path) {
-        if (path.startsWith("/api/customers")) {
-            return customerServiceUrl;
-        } else if (path.startsWith("/api/employees")) {
-            return employeeServiceUrl;
-        } else if (path.startsWith("/api/transactions")) {
-            return transactionServiceUrl;
-        } else if (path.startsWith("/api/loans")) {
-            return loanServiceUrl;
-        } else if (path.startsWith("/api/dashboard")) {
-            return customerServiceUrl;
-        }
-        return null;
-    }
-    
-    private HttpHeaders createForwardingHeaders(HttpServletRequest request) {
+        } catch (DownstreamGuard.RejectedException e) {
+            logger.warn("Rejected {} {}: {}", method, path, e.getMessage());
+            writeError(response, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e.getRetryAfterSeconds());
+        } catch (SocketTimeoutException e) {
+            logger.error("Timed out forwarding request to {}: {}", path, e.getMessage());
+            writeError(response, HttpStatus.GATEWAY_TIMEOUT, "Gateway timeout: " + e.getMessage());
+        } catch (IOException e) {
+            logger.error("Error forwarding request to {}: {}", path, e.getMessage());
+            writeError(response, HttpStatus.BAD_GATEWAY, "Gateway error: " + e.getMessage());
+        } finally {
+            if (admitted) {
+                admissionController.release();
+            }
+        }
+    }
+    
+    private int proxy(RouteTable.Route route, String target, HttpMethod method,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        LoadBalancer.Instance instance = loadBalancer.choose(route.getService(), route.affinityKey(target));
+        ClientHttpRequest forward = createForwardRequest(route, instance, target, method, request.getRequestURI(),
+                null);
+        copyRequestHeaders(request, forward.getHeaders());
+        if (hasBody(request)) {
+            ((StreamingHttpOutputMessage) forward).setBody(body -> copy(request.getInputStream(), body));
+        }
+        
+        ClientHttpResponse downstream = downstreamGuard.execute(route, instance, forward);
+        try {
+            int status = downstream.getStatusCode().value();
+            response.setStatus(status);
+            copyResponseHeaders(downstream.getHeaders(), response);
+            try (InputStream body = downstream.getBody()) {
+                copy(body, response.getOutputStream());
+            }
+            logger.info("Successfully forwarded request. Response status: {}", status);
+            return status;
+        } finally {
+            // Also when the status or headers cannot be read, so the guard's slots and the connection are released
+            downstream.close();
+        }
+    }
+    
+    // GETs on caching, coalescing or hedging routes are buffered so the response can be stored, shared or raced
+    private void forwardBufferedGet(RouteTable.Route route, String target,
+                                    HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String principalKey = principalKey(request, target);
+        
+        String cacheKey = null;
+        ResponseCache.Stamp stamp = null;
+        if (route.getCacheTtl() != null) {
+            cacheKey = responseCache.key(route, principalKey);
+            stamp = responseCache.stamp(route, target);
+            ResponseCache.CachedResponse cached = responseCache.get(route, cacheKey);
+            if (cached != null) {
+                writeCached(route, cached, "HIT", request, response);
+                return;
+            }
+        }
+        
+        RequestCoalescer.BufferedResponse fetched;
+        boolean fetchedHere = true;
+        if (route.isCoalesce()) {
+            RequestCoalescer.Ticket ticket = requestCoalescer.join(route.getId(), principalKey);
+            // A follower's stamp is newer than the call it shares, so only the leader may store the response
+            fetchedHere = ticket.isLeader();
+            fetched = fetchCoalesced(route, ticket, target, request, response);
+        } else {
+            fetched = fetchBuffered(route, target, request, response, null);
+        }
+        if (fetched == null) {
+            // Too large to buffer; it has already been streamed to the client
+            return;
+        }
+        
+        if (cacheKey != null) {
+            ResponseCache.CachedResponse entry = fetchedHere
+                    ? responseCache.put(route, cacheKey, stamp, fetched)
+                    : responseCache.wrap(route, fetched);
+            writeCached(route, entry, "MISS", request, response);
+        } else {
+            writeBuffered(fetched, response);
+        }
+    }
+    
+    // Identical concurrent GETs from the same principal share one downstream call
+    private RequestCoalescer.BufferedResponse fetchCoalesced(RouteTable.Route route, RequestCoalescer.Ticket ticket,
+                                                             String target, HttpServletRequest request,
+                                                             HttpServletResponse response) throws IOException {
+        RequestCoalescer.Flight flight = ticket.getFlight();
+        
+        if (!ticket.isLeader()) {
+            RequestCoalescer.BufferedResponse shared = awaitShared(flight);
+            return shared != null ? shared : fetchBuffered(route, target, request, response, null);
+        }
+        
+        try {
+            RequestCoalescer.BufferedResponse fetched = fetchBuffered(route, target, request, response, flight);
+            requestCoalescer.complete(flight, fetched);
+            return fetched;
+        } catch (IOException | RuntimeException e) {
+            requestCoalescer.fail(flight, e);
+            throw e;
+        }
+    }
+    
+    // Returns the response held in memory, or null once a body over the buffering limit has been streamed straight through
+    private RequestCoalescer.BufferedResponse fetchBuffered(RouteTable.Route route, String target,
+                                                            HttpServletRequest request, HttpServletResponse response,
+                                                            RequestCoalescer.Flight flight) throws IOException {
+        // Headers are copied up front because a hedged call is made off the servlet thread
         HttpHeaders headers = new HttpHeaders();
+        copyRequestHeaders(request, headers);
+        String path = request.getRequestURI();
+        String affinityKey = route.affinityKey(target);
+        
+        // Hedged calls race to the response headers; the body is read from the winner only
+        ClientHttpResponse fetched = route.isHedge()
+                ? requestHedger.execute(route, affinityKey,
+                        (instance, cancellation) -> sendGet(route, instance, target, path, headers, cancellation),
+                        GatewayService::isServerError)
+                : sendGet(route, loadBalancer.choose(route.getService(), affinityKey), target, path, headers, null);
+        try (ClientHttpResponse downstream = fetched; InputStream body = downstream.getBody()) {
+            // Reads up to one byte past the buffering limit, leaving the rest of a larger body to stream
+            byte[] bytes = body.readNBytes(maxBufferedBodyBytes + 1);
+            int status = downstream.getStatusCode().value();
+            if (bytes.length <= maxBufferedBodyBytes) {
+                HttpHeaders responseHeaders = new HttpHeaders();
+                responseHeaders.putAll(downstream.getHeaders());
+                return new RequestCoalescer.BufferedResponse(status, responseHeaders, bytes);
+            }
+            
+            if (flight != null) {
+                // Waiters make their own calls rather than wait for a body nobody can share
+                requestCoalescer.complete(flight, null);
+            }
+            response.setStatus(status);
+            copyResponseHeaders(downstream.getHeaders(), response);
+            response.getOutputStream().write(bytes);
+            copy(body, response.getOutputStream());
+            return null;
+        }
+    }
+    
+    private ClientHttpResponse sendGet(RouteTable.Route route, LoadBalancer.Instance instance, String target, String path,
+                                       HttpHeaders headers, RequestHedger.Cancellation cancellation)
+            throws IOException {
+        ClientHttpRequest forward = createForwardRequest(route, instance, target, HttpMethod.GET, path, cancellation);
+        forward.getHeaders().putAll(headers);
+        return downstreamGuard.execute(route, instance, forward, cancellation);
+    }
+    
+    // A 5xx loses the hedge race to the other attempt; an unreadable status counts as one too
+    private static boolean isServerError(ClientHttpResponse response) {
+        try {
+            return response.getStatusCode().is5xxServerError();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+    
+    private RequestCoalescer.BufferedResponse awaitShared(RequestCoalescer.Flight flight) throws IOException {
+        try {
+            return flight.getResult().get(coalesceMaxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for coalesced response", e);
+        } catch (ExecutionException e) {
+            // The leader's failure is the answer for everyone who was waiting on it
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof DownstreamGuard.RejectedException) {
+                throw (DownstreamGuard.RejectedException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    private String principalKey(HttpServletRequest request, String target) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String principal = auth != null && auth.isAuthenticated() && auth.getName() != null
+                ? "user:" + auth.getName()
+                : "header:" + request.getHeader(HttpHeaders.AUTHORIZATION);
+        return principal + " " + request.getHeader(HttpHeaders.ACCEPT) + " " + target;
+    }
+    
+    private ClientHttpRequest createForwardRequest(RouteTable.Route route, LoadBalancer.Instance instance, String target,
+                                                   HttpMethod method, String path,
+                                                   RequestHedger.Cancellation cancellation) throws IOException {
+        URI uri = URI.create(instance.getUrl() + target);
+        logger.info("Forwarding {} {} to {}", method, path, uri);
+        return route.getRequestFactory().createRequest(uri, method, cancellation);
+    }
+    
+    private void writeCached(RouteTable.Route route, ResponseCache.CachedResponse cached, String cacheStatus,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, cached.getEtag());
+        // Clients may keep the body but must revalidate, which costs them a 304 while the entry is unchanged
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader("X-Cache", cacheStatus);
         
+        if (cached.getStatus() == 200 && cached.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            responseCache.notModified(route, cached);
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        
+        response.setStatus(cached.getStatus());
+        copyResponseHeaders(cached.getHeaders(), response);
+        response.getOutputStream().write(cached.getBody());
+    }
+    
+    private boolean isWrite(HttpMethod method) {
+        return method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS;
+    }
+    
+    private void writeBuffered(RequestCoalescer.BufferedResponse buffered, HttpServletResponse response) throws IOException {
+        response.setStatus(buffered.getStatus());
+        copyResponseHeaders(buffered.getHeaders(), response);
+        response.getOutputStream().write(buffered.getBody());
+    }
+    
+    private void copyRequestHeaders(HttpServletRequest request, HttpHeaders headers) {
         Enumeration<String> headerNames = request.getHeaderNames();
         if (headerNames != null) {
             for (String headerName : Collections.list(headerNames)) {
-                String headerValue = request.getHeader(headerName);
-                if (headerValue != null && !headerName.equalsIgnoreCase("host")) {
-                    headers.set(headerName, headerValue);
+                // A client-supplied identity assertion is never relayed; only the one signed below is
+                if (!HOP_BY_HOP_HEADERS.contains(headerName.toLowerCase())
+                        && !IdentityAssertion.HEADER.equalsIgnoreCase(headerName)) {
+                    headers.put(headerName, Collections.list(request.getHeaders(headerName)));
                 }
             }
         }
-        
-        return headers;
+        Object identity = request.getAttribute(IdentityAssertion.HEADER);
+        if (identity != null) {
+            headers.set(IdentityAssertion.HEADER, (String) identity);
+        }
+    }
+    
+    private void copyResponseHeaders(HttpHeaders headers, HttpServletResponse response) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (HOP_BY_HOP_HEADERS.contains(header.getKey().toLowerCase())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+    }
+    
+    private boolean hasBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null;
+    }
+    
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = copyBuffer.get();
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        out.flush();
+    }
+    
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        writeError(response, status, message, 0);
+    }
+    
+    private void writeError(HttpServletResponse response, HttpStatus status, String message,
+                            long retryAfterSeconds) throws IOException {
+        if (response.isCommitted()) {
+            // Part of the downstream body is already on the wire, so the client sees a truncated response
+            return;
+        }
+        response.reset();
+        response.setStatus(status.value());
+        if (retryAfterSeconds > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        }
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,519 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.DownstreamServicesProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.HttpHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+@Component
+public class LoadBalancer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoadBalancer.class);
+    
+    @Autowired
+    private DownstreamServicesProperties services;
+    
+    @Autowired
+    private PoolingHttpClientConnectionManager gatewayConnectionManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // p2c (power of two choices) or least-outstanding
+    @Value("${gateway.load-balancer.strategy:p2c}")
+    private String strategy;
+    
+    @Value("${gateway.load-balancer.probe-interval:5s}")
+    private Duration probeInterval;
+    
+    @Value("${gateway.load-balancer.probe-timeout:1s}")
+    private Duration probeTimeout;
+    
+    @Value("${gateway.load-balancer.unhealthy-threshold:2}")
+    private int unhealthyThreshold;
+    
+    @Value("${gateway.load-balancer.healthy-threshold:1}")
+    private int healthyThreshold;
+    
+    @Value("${gateway.load-balancer.ejection.consecutive-failures:5}")
+    private int ejectionConsecutiveFailures;
+    
+    @Value("${gateway.load-balancer.ejection.base-time:30s}")
+    private Duration ejectionBaseTime;
+    
+    @Value("${gateway.load-balancer.ejection.max-time:5m}")
+    private Duration ejectionMaxTime;
+    
+    @Value("${gateway.load-balancer.ejection.max-percent:50}")
+    private int ejectionMaxPercent;
+    
+    @Value("${gateway.load-balancer.hash-ring.virtual-nodes:160}")
+    private int virtualNodes;
+    
+    // Hosts, or host:port pairs, that a runtime reload may point a service at; anything else is refused so the
+    // admin endpoint cannot send traffic, and the identity it carries, to an arbitrary address
+    @Value("${gateway.load-balancer.reload.allowed-hosts:localhost,127.0.0.1}")
+    private Set<String> allowedHosts;
+    
+    // Replaced wholesale on reload, so choose() always reads one consistent array without locking
+    private final Map<String, Instance[]> pools = new ConcurrentHashMap<>();
+    
+    // Rebuilt alongside pools; only consulted for routes with an affinity segment
+    private final Map<String, ConsistentHashRing<Instance>> rings = new ConcurrentHashMap<>();
+    
+    private final Map<String, Counter> ejectionCounters = new ConcurrentHashMap<>();
+    
+    // Millisecond clock that ejections are timed and availability is checked against
+    private LongSupplier clock = System::currentTimeMillis;
+    
+    private SimpleClientHttpRequestFactory probeRequestFactory;
+    
+    private final ScheduledExecutorService probeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gateway-health-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    public void init() {
+        // Probes bypass the shared pool so a hung instance cannot hold connections the traffic needs
+        probeRequestFactory = new SimpleClientHttpRequestFactory();
+        probeRequestFactory.setConnectTimeout(probeTimeout);
+        probeRequestFactory.setReadTimeout(probeTimeout);
+        
+        services.forEach((name, service) -> {
+            Instance[] instances = buildInstances(name, service.resolveInstances());
+            rings.put(name, buildRing(instances));
+            pools.put(name, instances);
+            ejectionCounters.put(name, Counter.builder("gateway.lb.ejections")
+                    .description("Instances ejected after consecutive failures")
+                    .tag("service", name)
+                    .register(meterRegistry));
+            Gauge.builder("gateway.lb.instances.available", () -> countAvailable(name))
+                    .description("Instances currently eligible for traffic")
+                    .tag("service", name)
+                    .register(meterRegistry);
+            logger.info("Load balancing {} over {} with {}", name, service.resolveInstances(), strategy);
+        });
+        
+        long interval = probeInterval.toMillis();
+        probeExecutor.scheduleWithFixedDelay(this::probeAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    // Lets tests eject and readmit instances without waiting out the ejection time
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+    
+    // Requests with an affinity key stick to the key's owner on the ring while it is available
+    public Instance choose(String service, String affinityKey) {
+        if (affinityKey != null) {
+            ConsistentHashRing<Instance> ring = rings.get(service);
+            long now = clock.getAsLong();
+            Instance owner = ring != null ? ring.locate(affinityKey, instance -> instance.isAvailable(now)) : null;
+            if (owner != null) {
+                return owner;
+            }
+        }
+        return choose(service);
+    }
+    
+    public Instance choose(String service) {
+        Instance[] instances = pools.get(service);
+        if (instances == null || instances.length == 0) {
+            throw new DownstreamGuard.RejectedException(service + " has no instances", 1);
+        }
+        
+        long now = clock.getAsLong();
+        Instance chosen = "least-outstanding".equals(strategy)
+                ? leastOutstanding(instances, now)
+                : powerOfTwoChoices(instances, now);
+        if (chosen == null) {
+            // Everything is down or ejected: spread load over all of them rather than fail the service outright
+            chosen = instances[ThreadLocalRandom.current().nextInt(instances.length)];
+        }
+        return chosen;
+    }
+    
+    // A second instance for a hedged call: the key's next owner on the ring, else the least loaded other instance.
+    // Returns null when no other instance is available
+    public Instance chooseAlternate(String service, String affinityKey, Instance exclude) {
+        long now = clock.getAsLong();
+        if (affinityKey != null) {
+            ConsistentHashRing<Instance> ring = rings.get(service);
+            Instance next = ring != null
+                    ? ring.locate(affinityKey, instance -> instance != exclude && instance.isAvailable(now))
+                    : null;
+            if (next != null) {
+                return next;
+            }
+        }
+        Instance[] instances = pools.get(service);
+        if (instances == null) {
+            return null;
+        }
+        Instance best = null;
+        for (Instance instance : instances) {
+            if (instance != exclude && instance.isAvailable(now)
+                    && (best == null || instance.outstanding.get() < best.outstanding.get())) {
+                best = instance;
+            }
+        }
+        return best;
+    }
+    
+    // Called by DownstreamGuard around each call so outstanding counts and outcomes are per instance
+    public void onStart(Instance instance) {
+        instance.outstanding.incrementAndGet();
+    }
+    
+    public void onComplete(Instance instance) {
+        instance.outstanding.decrementAndGet();
+    }
+    
+    public void onSuccess(Instance instance) {
+        instance.consecutiveFailures.set(0);
+    }
+    
+    // Connection errors and 5xx count towards passive ejection
+    public void onFailure(Instance instance) {
+        if (instance.consecutiveFailures.incrementAndGet() >= ejectionConsecutiveFailures) {
+            eject(instance);
+        }
+    }
+    
+    // Swaps in a new instance list; instances that stay keep their counters and ejection state
+    public List<String> reload(String service, List<String> urls) {
+        Instance[] current = pools.get(service);
+        if (current == null) {
+            throw new RuntimeException("Unknown service: " + service);
+        }
+        if (urls == null || urls.isEmpty()) {
+            throw new RuntimeException("Service " + service + " needs at least one instance");
+        }
+        // Checked up front, so a rejected list leaves the pool and its connection limits untouched
+        for (String url : urls) {
+            checkAllowed(url);
+        }
+        
+        Map<String, Instance> existing = new LinkedHashMap<>();
+        for (Instance instance : current) {
+            existing.put(instance.url, instance);
+        }
+        
+        List<Instance> reloaded = new ArrayList<>();
+        List<Instance> added = new ArrayList<>();
+        for (String url : urls) {
+            String normalized = normalize(url);
+            Instance instance = existing.get(normalized);
+            if (instance == null) {
+                instance = newInstance(service, normalized);
+                added.add(instance);
+            }
+            reloaded.add(instance);
+        }
+        Instance[] instances = reloaded.toArray(new Instance[0]);
+        rings.put(service, buildRing(instances));
+        pools.put(service, instances);
+        services.get(service).setInstances(new ArrayList<>(urls));
+        logger.info("Reloaded {} instances: {}", service, urls);
+        
+        // Dropped instances give up their connection limit, unless another service still uses the same address
+        for (Instance instance : reloaded) {
+            existing.remove(instance.url);
+        }
+        for (String dropped : existing.keySet()) {
+            if (!inUse(dropped)) {
+                gatewayConnectionManager.setMaxPerRoute(new HttpRoute(HttpHost.create(URI.create(dropped))), -1);
+            }
+        }
+        
+        // New instances are trusted until their first probe, which runs straight away
+        added.forEach(instance -> probeExecutor.execute(() -> probe(instance)));
+        return urls;
+    }
+    
+    public Map<String, List<Map<String, Object>>> describe() {
+        long now = clock.getAsLong();
+        Map<String, List<Map<String, Object>>> result = new LinkedHashMap<>();
+        for (String service : services.keySet()) {
+            List<Map<String, Object>> states = new ArrayList<>();
+            for (Instance instance : pools.getOrDefault(service, new Instance[0])) {
+                Map<String, Object> state = new LinkedHashMap<>();
+                state.put("url", instance.url);
+                state.put("available", instance.isAvailable(now));
+                state.put("healthy", instance.healthy);
+                state.put("ejectedForMillis", Math.max(0, instance.ejectedUntil - now));
+                state.put("outstanding", instance.outstanding.get());
+                state.put("consecutiveFailures", instance.consecutiveFailures.get());
+                states.add(state);
+            }
+            result.put(service, states);
+        }
+        return result;
+    }
+    
+    private Instance powerOfTwoChoices(Instance[] instances, long now) {
+        int count = instances.length;
+        if (count == 1) {
+            return instances[0].isAvailable(now) ? instances[0] : null;
+        }
+        
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(count);
+        int second = random.nextInt(count - 1);
+        if (second >= first) {
+            second++;
+        }
+        Instance a = instances[first];
+        Instance b = instances[second];
+        boolean aAvailable = a.isAvailable(now);
+        boolean bAvailable = b.isAvailable(now);
+        
+        if (aAvailable && bAvailable) {
+            return a.outstanding.get() <= b.outstanding.get() ? a : b;
+        }
+        if (aAvailable || bAvailable) {
+            return aAvailable ? a : b;
+        }
+        // Both samples were out of rotation; fall back to a full scan over the rest
+        return leastOutstanding(instances, now);
+    }
+    
+    // Starts the scan at a random offset so ties do not all land on the first instance
+    private Instance leastOutstanding(Instance[] instances, long now) {
+        int count = instances.length;
+        int start = ThreadLocalRandom.current().nextInt(count);
+        Instance best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Instance instance = instances[(start + i) % count];
+            if (!instance.isAvailable(now)) {
+                continue;
+            }
+            int outstanding = instance.outstanding.get();
+            if (outstanding < bestOutstanding) {
+                best = instance;
+                bestOutstanding = outstanding;
+            }
+        }
+        return best;
+    }
+    
+    private void eject(Instance instance) {
+        long now = clock.getAsLong();
+        Instance[] instances = pools.getOrDefault(instance.service, new Instance[0]);
+        
+        synchronized (instance) {
+            if (instance.ejectedUntil > now) {
+                return;
+            }
+            int ejected = 0;
+            for (Instance other : instances) {
+                if (other.ejectedUntil > now) {
+                    ejected++;
+                }
+            }
+            if ((ejected + 1) * 100 > instances.length * ejectionMaxPercent) {
+                // Ejecting more would push the remaining load onto too few instances
+                logger.warn("Not ejecting {} instance {}: {} of {} already ejected",
+                        instance.service, instance.url, ejected, instances.length);
+                instance.consecutiveFailures.set(0);
+                return;
+            }
+            
+            // Repeat offenders stay out longer; the multiplier resets once an instance has behaved for max-time
+            if (now - instance.ejectedUntil > ejectionMaxTime.toMillis()) {
+                instance.ejections = 0;
+            }
+            instance.ejections++;
+            long duration = Math.min(ejectionBaseTime.toMillis() * instance.ejections, ejectionMaxTime.toMillis());
+            instance.ejectedUntil = now + duration;
+            instance.consecutiveFailures.set(0);
+            logger.warn("Ejected {} instance {} for {} ms after {} consecutive failures",
+                    instance.service, instance.url, duration, ejectionConsecutiveFailures);
+        }
+        ejectionCounters.get(instance.service).increment();
+    }
+    
+    private void probeAll() {
+        pools.values().forEach(instances -> {
+            for (Instance instance : instances) {
+                probe(instance);
+            }
+        });
+    }
+    
+    private void probe(Instance instance) {
+        boolean up = check(instance);
+        if (up) {
+            instance.probeFailures = 0;
+            if (!instance.healthy && ++instance.probeSuccesses >= healthyThreshold) {
+                instance.healthy = true;
+                logger.info("{} instance {} is healthy again", instance.service, instance.url);
+            }
+        } else {
+            instance.probeSuccesses = 0;
+            if (instance.healthy && ++instance.probeFailures >= unhealthyThreshold) {
+                instance.healthy = false;
+                logger.warn("{} instance {} failed {} health probes, taking it out of rotation",
+                        instance.service, instance.url, instance.probeFailures);
+            }
+        }
+    }
+    
+    private boolean check(Instance instance) {
+        DownstreamServicesProperties.ServiceEndpoint service = services.get(instance.service);
+        String healthPath = service != null ? service.getHealthPath() : null;
+        try {
+            if (healthPath != null) {
+                URI uri = URI.create(instance.url + healthPath);
+                try (ClientHttpResponse response = probeRequestFactory.createRequest(uri, HttpMethod.GET).execute()) {
+                    return response.getStatusCode().is2xxSuccessful();
+                }
+            }
+            URI uri = URI.create(instance.url);
+            int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(uri.getHost(), port), (int) probeTimeout.toMillis());
+                return true;
+            }
+        } catch (IOException e) {
+            logger.debug("Health probe of {} failed: {}", instance.url, e.getMessage());
+            return false;
+        }
+    }
+    
+    // Instances neither failing health probes nor ejected
+    public int countAvailable(String service) {
+        long now = clock.getAsLong();
+        int available = 0;
+        for (Instance instance : pools.getOrDefault(service, new Instance[0])) {
+            if (instance.isAvailable(now)) {
+                available++;
+            }
+        }
+        return available;
+    }
+    
+    private Instance[] buildInstances(String service, List<String> urls) {
+        Instance[] instances = new Instance[urls.size()];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = newInstance(service, normalize(urls.get(i)));
+        }
+        return instances;
+    }
+    
+    private ConsistentHashRing<Instance> buildRing(Instance[] instances) {
+        return new ConsistentHashRing<>(List.of(instances), Instance::getUrl, virtualNodes);
+    }
+    
+    private Instance newInstance(String service, String url) {
+        DownstreamServicesProperties.ServiceEndpoint endpoint = services.get(service);
+        // Each instance gets the service's own connection limit in the shared pool
+        gatewayConnectionManager.setMaxPerRoute(new HttpRoute(HttpHost.create(URI.create(url))),
+                endpoint.getMaxConnections());
+        return new Instance(service, url);
+    }
+    
+    private void checkAllowed(String url) {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Invalid instance URL: " + url);
+        }
+        String path = uri.getRawPath();
+        if (!("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) || uri.getHost() == null
+                || uri.getRawUserInfo() != null || (path != null && !path.isEmpty() && !path.equals("/"))
+                || uri.getRawQuery() != null || uri.getRawFragment() != null) {
+            throw new RuntimeException("Instance URL must be http(s)://host[:port]: " + url);
+        }
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (!allowedHosts.contains(host) && !allowedHosts.contains(host + ":" + uri.getPort())) {
+            throw new RuntimeException("Instance host " + host + " is not in gateway.load-balancer.reload.allowed-hosts");
+        }
+    }
+    
+    private boolean inUse(String url) {
+        for (Instance[] instances : pools.values()) {
+            for (Instance instance : instances) {
+                if (instance.url.equals(url)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private String normalize(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+    }
+    
+    public static class Instance {
+        private final String service;
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile boolean healthy = true;
+        private volatile long ejectedUntil;
+        // Guarded by the instance monitor
+        private int ejections;
+        // Only touched from the probe thread
+        private int probeFailures;
+        private int probeSuccesses;
+        
+        Instance(String service, String url) {
+            this.service = service;
+            this.url = url;
+        }
+        
+        public String getService() { return service; }
+        
+        public String getUrl() { return url; }
+        
+        public int getOutstanding() { return outstanding.get(); }
+        
+        boolean isAvailable(long now) {
+            return healthy && ejectedUntil <= now;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.GatewayRoutesProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+public class RateLimiter {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${gateway.rate-limit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${gateway.rate-limit.capacity:100}")
+    private int defaultCapacity;
+    
+    @Value("${gateway.rate-limit.refill-per-second:50}")
+    private int defaultRefillPerSecond;
+    
+    @Value("${gateway.rate-limit.max-keys:100000}")
+    private long maxKeys;
+    
+    @Value("${gateway.rate-limit.idle-expiry:10m}")
+    private Duration idleExpiry;
+    
+    // One bucket per route and principal. A bucket left idle long enough to refill is full, so expiring it loses nothing
+    private Cache<String, TokenBucket> buckets;
+    
+    @PostConstruct
+    public void init() {
+        // Fails startup rather than the first request when the default does not fit a bucket
+        new TokenBucket(defaultCapacity, defaultRefillPerSecond, TokenBucket.now());
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleExpiry)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "gatewayRateLimitBuckets");
+    }
+    
+    // Returns null when the route is not limited
+    public Decision acquire(RouteTable.Route route, HttpServletRequest request) {
+        GatewayRoutesProperties.RateLimitDefinition limit = route.getRateLimit();
+        if (!enabled || (limit != null && limit.isDisabled())) {
+            return null;
+        }
+        int capacity = limit != null && limit.getCapacity() != null ? limit.getCapacity() : defaultCapacity;
+        int refillPerSecond = limit != null && limit.getRefillPerSecond() != null
+                ? limit.getRefillPerSecond() : defaultRefillPerSecond;
+        
+        long now = TokenBucket.now();
+        TokenBucket bucket = buckets.get(route.getId() + " " + principal(request),
+                key -> new TokenBucket(capacity, refillPerSecond, now));
+        long result = bucket.tryAcquire(now);
+        if (result < 0) {
+            meterRegistry.counter("gateway.ratelimit.rejected", "route", route.getId()).increment();
+            return new Decision(false, capacity, 0, -result);
+        }
+        return new Decision(true, capacity, result, 0);
+    }
+    
+    // Authenticated callers are limited by name; anonymous ones by the connecting address, never by a client-supplied header
+    private String principal(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return "user:" + auth.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+    
+    public static class Decision {
+        private final boolean allowed;
+        private final int limit;
+        private final long remaining;
+        private final long retryAfterMillis;
+        
+        Decision(boolean allowed, int limit, long remaining, long retryAfterMillis) {
+            this.allowed = allowed;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+        
+        public boolean isAllowed() { return allowed; }
+        
+        public int getLimit() { return limit; }
+        
+        public long getRemaining() { return remaining; }
+        
+        public long getRetryAfterMillis() { return retryAfterMillis; }
+    }
+}
@@ -0,0 +1,120 @@
+package com.bank.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class RequestCoalescer {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    
+    // The first caller for a key becomes the leader and performs the call; later callers wait on its result
+    public Ticket join(String routeId, String key) {
+        Flight flight = new Flight(routeId, key);
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            existing.waiters.incrementAndGet();
+            requests(routeId, "follower").increment();
+            return new Ticket(existing, false);
+        }
+        requests(routeId, "leader").increment();
+        return new Ticket(flight, true);
+    }
+    
+    // A null response tells followers to make their own call, e.g. when the body was too large to share
+    public void complete(Flight flight, BufferedResponse response) {
+        if (flight.settled.compareAndSet(false, true)) {
+            inFlight.remove(flight.key, flight);
+            recordFanout(flight);
+            flight.result.complete(response);
+        }
+    }
+    
+    public void fail(Flight flight, Exception e) {
+        if (flight.settled.compareAndSet(false, true)) {
+            inFlight.remove(flight.key, flight);
+            recordFanout(flight);
+            flight.result.completeExceptionally(e);
+        }
+    }
+    
+    // Mean of gateway.coalesce.fanout is the number of clients served per downstream call
+    private void recordFanout(Flight flight) {
+        DistributionSummary.builder("gateway.coalesce.fanout")
+                .description("Clients served by one coalesced downstream call")
+                .tag("route", flight.routeId)
+                .register(meterRegistry)
+                .record(1 + flight.waiters.get());
+    }
+    
+    private Counter requests(String routeId, String role) {
+        return Counter.builder("gateway.coalesce.requests")
+                .description("GET requests on coalescing routes, by whether they made the downstream call")
+                .tag("route", routeId)
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+    
+    public static class Flight {
+        private final String routeId;
+        private final String key;
+        private final AtomicInteger waiters = new AtomicInteger();
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private final CompletableFuture<BufferedResponse> result = new CompletableFuture<>();
+        
+        Flight(String routeId, String key) {
+            this.routeId = routeId;
+            this.key = key;
+        }
+        
+        public CompletableFuture<BufferedResponse> getResult() { return result; }
+    }
+    
+    // One caller's view of a flight. Leadership belongs to the caller that opened it, not to a thread, since the
+    // call itself may run on another thread, e.g. a hedge
+    public static class Ticket {
+        private final Flight flight;
+        private final boolean leader;
+        
+        Ticket(Flight flight, boolean leader) {
+            this.flight = flight;
+            this.leader = leader;
+        }
+        
+        public Flight getFlight() { return flight; }
+        
+        // The leader makes the call; it cannot also be waiting on it
+        public boolean isLeader() { return leader; }
+    }
+    
+    public static class BufferedResponse {
+        private final int status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        
+        public BufferedResponse(int status, HttpHeaders headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+        
+        public int getStatus() { return status; }
+        
+        public HttpHeaders getHeaders() { return headers; }
+        
+        public byte[] getBody() { return body; }
+    }
+}
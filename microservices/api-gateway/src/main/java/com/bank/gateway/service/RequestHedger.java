@@ -0,0 +1,379 @@
+package com.bank.gateway.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+@Component
+public class RequestHedger {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RequestHedger.class);
+    
+    // Four buckets per power of two of microseconds, so a bucket's bounds are within 25% of each other
+    private static final int BUCKETS = 160;
+    
+    // Budget is kept in thousandths of a hedge
+    private static final long HEDGE_COST = 1000;
+    
+    @Autowired
+    private LoadBalancer loadBalancer;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${gateway.hedge.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${gateway.hedge.percentile:0.95}")
+    private double percentile;
+    
+    @Value("${gateway.hedge.min-delay:5ms}")
+    private Duration minDelay;
+    
+    @Value("${gateway.hedge.max-delay:1s}")
+    private Duration maxDelay;
+    
+    @Value("${gateway.hedge.window:10s}")
+    private Duration window;
+    
+    @Value("${gateway.hedge.min-samples:100}")
+    private int minSamples;
+    
+    @Value("${gateway.hedge.budget-percent:5}")
+    private double budgetPercent;
+    
+    @Value("${gateway.hedge.budget-burst:10}")
+    private int budgetBurst;
+    
+    private final Map<String, RouteState> routes = new ConcurrentHashMap<>();
+    
+    // Both the primary and the hedge run here while the servlet thread waits; when it is full the call runs
+    // on the servlet thread unhedged
+    private final ThreadPoolExecutor executor;
+    
+    public RequestHedger(@Value("${gateway.hedge.threads:64}") int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "gateway-hedge-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+    
+    public interface Attempt<T extends Closeable> {
+        // The cancellation is null for a call that is not raced against another
+        T call(LoadBalancer.Instance instance, Cancellation cancellation) throws IOException;
+    }
+    
+    // Aborts a losing attempt's request once the other attempt has its response headers. The attempt registers its
+    // request when it creates it, which may be after the cancel
+    public static class Cancellation {
+        private final AtomicReference<Cancellable> request = new AtomicReference<>();
+        private volatile boolean cancelled;
+        
+        public void register(Cancellable cancellable) {
+            request.set(cancellable);
+            if (cancelled) {
+                cancellable.cancel();
+            }
+        }
+        
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        void cancel() {
+            cancelled = true;
+            Cancellable cancellable = request.get();
+            if (cancellable != null) {
+                cancellable.cancel();
+            }
+        }
+    }
+    
+    // Calls one instance, and a second as well once the first has taken longer than the route's recent percentile.
+    // The first success is returned; the other result is closed as soon as it arrives. A result the failed test
+    // matches, such as a 5xx, loses to the other attempt and is only returned when both fail. Hedging starts after
+    // one window of samples, and each hedge spends budget earned at budget-percent of the route's requests. While
+    // the service has fewer than two available instances the call is made directly on the calling thread
+    public <T extends Closeable> T execute(RouteTable.Route route, String affinityKey, Attempt<T> attempt,
+                                           Predicate<T> failed) throws IOException {
+        LoadBalancer.Instance primary = loadBalancer.choose(route.getService(), affinityKey);
+        RouteState state = routes.computeIfAbsent(route.getId(), RouteState::new);
+        long delay = state.delayNanos;
+        if (!enabled || delay == 0 || loadBalancer.countAvailable(route.getService()) < 2) {
+            return timed(state, attempt, failed, primary, null);
+        }
+        state.deposit();
+        
+        Cancellation primaryCancellation = new Cancellation();
+        CompletableFuture<T> first;
+        try {
+            first = submit(state, attempt, failed, primary, primaryCancellation);
+        } catch (RejectedExecutionException e) {
+            return timed(state, attempt, failed, primary, null);
+        }
+        try {
+            return first.get(delay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Slower than most; hedge below
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            return abandon(first, e);
+        }
+        
+        LoadBalancer.Instance alternate = loadBalancer.chooseAlternate(route.getService(), affinityKey, primary);
+        if (alternate == null || first.isDone()) {
+            return await(first);
+        }
+        if (!state.withdraw()) {
+            meterRegistry.counter("gateway.hedge.budget.exhausted", "route", route.getId()).increment();
+            return await(first);
+        }
+        
+        Cancellation hedgeCancellation = new Cancellation();
+        CompletableFuture<T> second;
+        try {
+            second = submit(state, attempt, failed, alternate, hedgeCancellation);
+        } catch (RejectedExecutionException e) {
+            state.refund();
+            return await(first);
+        }
+        meterRegistry.counter("gateway.hedge.sent", "route", route.getId()).increment();
+        logger.debug("Hedging {} on {} after {} ms", route.getId(), alternate.getUrl(),
+                TimeUnit.NANOSECONDS.toMillis(delay));
+        return await(firstSuccess(route, first, primaryCancellation, second, hedgeCancellation, failed));
+    }
+    
+    private <T extends Closeable> T timed(RouteState state, Attempt<T> attempt, Predicate<T> failed,
+                                          LoadBalancer.Instance instance, Cancellation cancellation)
+            throws IOException {
+        long started = System.nanoTime();
+        T result = attempt.call(instance, cancellation);
+        // Only successes are recorded; a fast refusal or error says nothing about how long an answer takes
+        if (!failed.test(result)) {
+            state.record(System.nanoTime() - started);
+        }
+        return result;
+    }
+    
+    private <T extends Closeable> CompletableFuture<T> submit(RouteState state, Attempt<T> attempt, Predicate<T> failed,
+                                                              LoadBalancer.Instance instance,
+                                                              Cancellation cancellation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(timed(state, attempt, failed, instance, cancellation));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+    
+    // Fails only when both calls fail, with a failed response in preference to an exception. The slower call is
+    // aborted as soon as the other succeeds, or closed unread if its headers have already arrived
+    private <T extends Closeable> CompletableFuture<T> firstSuccess(RouteTable.Route route, CompletableFuture<T> primary,
+                                                                    Cancellation primaryCancellation,
+                                                                    CompletableFuture<T> hedge,
+                                                                    Cancellation hedgeCancellation,
+                                                                    Predicate<T> failed) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<T> failedResult = new AtomicReference<>();
+        primary.whenComplete(settle(route, winner, failures, failedResult, failed, hedgeCancellation, false));
+        hedge.whenComplete(settle(route, winner, failures, failedResult, failed, primaryCancellation, true));
+        return winner;
+    }
+    
+    private <T extends Closeable> BiConsumer<T, Throwable> settle(RouteTable.Route route, CompletableFuture<T> winner,
+                                                                  AtomicInteger failures, AtomicReference<T> failedResult,
+                                                                  Predicate<T> failed, Cancellation other,
+                                                                  boolean hedge) {
+        return (result, error) -> {
+            if (error != null || failed.test(result)) {
+                // The first failed response is held back in case the other attempt fails as well
+                if (result != null && !failedResult.compareAndSet(null, result)) {
+                    closeQuietly(result);
+                }
+                if (failures.incrementAndGet() == 2) {
+                    T fallback = failedResult.getAndSet(null);
+                    if (fallback == null) {
+                        winner.completeExceptionally(error);
+                    } else if (!winner.complete(fallback)) {
+                        closeQuietly(fallback);
+                    }
+                }
+            } else if (winner.complete(result)) {
+                // The other call is still waiting for headers, or holds a failed response that is not needed any more
+                other.cancel();
+                closeQuietly(failedResult.getAndSet(null));
+                if (hedge) {
+                    meterRegistry.counter("gateway.hedge.won", "route", route.getId()).increment();
+                }
+            } else {
+                closeQuietly(result);
+            }
+        };
+    }
+    
+    private <T extends Closeable> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            return abandon(future, e);
+        }
+    }
+    
+    private <T extends Closeable> T abandon(CompletableFuture<T> future, InterruptedException e) throws IOException {
+        Thread.currentThread().interrupt();
+        future.whenComplete((result, error) -> closeQuietly(result));
+        throw new IOException("Interrupted waiting for downstream response", e);
+    }
+    
+    private static IOException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause.getMessage(), cause);
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Error closing discarded hedge response: {}", e.getMessage());
+        }
+    }
+    
+    private static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) Math.max(0, micros);
+        }
+        int log = 63 - Long.numberOfLeadingZeros(micros);
+        return Math.min(BUCKETS - 1, (log << 2) | (int) ((micros >>> (log - 2)) & 3));
+    }
+    
+    private static long upperBoundMicros(int bucket) {
+        if (bucket < 4) {
+            return bucket + 1;
+        }
+        int log = bucket >>> 2;
+        return (long) (5 + (bucket & 3)) << (log - 2);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private class RouteState {
+        // Latency histogram for the current window; the hedge delay is taken from it when the window closes
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong budget = new AtomicLong();
+        private volatile long windowEnd = System.nanoTime() + window.toNanos();
+        // Zero until the first window with enough samples
+        private volatile long delayNanos;
+        
+        RouteState(String routeId) {
+            Gauge.builder("gateway.hedge.delay", this, state -> state.delayNanos / 1_000_000.0)
+                    .description("Milliseconds before a slow call is hedged")
+                    .tag("route", routeId)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        
+        void record(long nanos) {
+            counts.incrementAndGet(bucket(nanos / 1000));
+            long now = System.nanoTime();
+            if (now - windowEnd >= 0) {
+                rotate(now);
+            }
+        }
+        
+        private synchronized void rotate(long now) {
+            if (now - windowEnd < 0) {
+                return;
+            }
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.getAndSet(i, 0);
+                total += snapshot[i];
+            }
+            windowEnd = now + window.toNanos();
+            if (total < minSamples) {
+                return;
+            }
+            
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    long nanos = upperBoundMicros(i) * 1000;
+                    delayNanos = Math.max(minDelay.toNanos(), Math.min(maxDelay.toNanos(), nanos));
+                    return;
+                }
+            }
+        }
+        
+        void deposit() {
+            long earned = (long) (budgetPercent * HEDGE_COST / 100);
+            long cap = budgetBurst * HEDGE_COST;
+            budget.updateAndGet(balance -> Math.min(cap, balance + earned));
+        }
+        
+        boolean withdraw() {
+            while (true) {
+                long balance = budget.get();
+                if (balance < HEDGE_COST) {
+                    return false;
+                }
+                if (budget.compareAndSet(balance, balance - HEDGE_COST)) {
+                    return true;
+                }
+            }
+        }
+        
+        void refund() {
+            budget.addAndGet(HEDGE_COST);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.bank.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+@Component
+public class ResponseCache {
+    
+    // Downstream services send no-store on everything; routes opt in explicitly, so these are replaced by our own
+    private static final Set<String> UNCACHED_HEADERS = Set.of(
+            "cache-control", "pragma", "expires", "etag", "last-modified", "set-cookie", "date", "content-length");
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${gateway.cache.max-bytes:67108864}")
+    private long maxBytes;
+    
+    @Value("${gateway.cache.max-entry-bytes:262144}")
+    private int maxEntryBytes;
+    
+    private Cache<String, CachedResponse> cache;
+    
+    // Write generations, bumped per item and per route. An entry keeps the generations seen before its fetch began
+    // and is served only while they are unchanged, so invalidation never scans the cache and a fetch that overlapped
+    // a write is never served. Slots are shared by hash; a collision costs a miss, never a stale hit
+    private final AtomicLongArray generations = new AtomicLongArray(4096);
+    
+    @PostConstruct
+    public void initCache() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse entry) -> entry.body.length + key.length() * 2)
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse entry, long currentTime) {
+                        return entry.ttl.toNanos();
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse entry, long currentTime, long currentDuration) {
+                        return entry.ttl.toNanos();
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        // Hit ratio comes from cache.gets{cache=gatewayResponses,result=hit|miss}
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gatewayResponses");
+    }
+    
+    // Keys start with the route and carry the caller's principal, so one user's entries are never served to another
+    public String key(RouteTable.Route route, String principalKey) {
+        return route.getId() + " " + principalKey;
+    }
+    
+    // Taken before the cache lookup, and so before any downstream call whose response may be stored under it
+    public Stamp stamp(RouteTable.Route route, String target) {
+        int routeSlot = slot(route.getId());
+        int resourceSlot = slot(route.getId() + " " + route.resourceOf(target));
+        return new Stamp(routeSlot, generations.get(routeSlot), resourceSlot, generations.get(resourceSlot));
+    }
+    
+    public CachedResponse get(RouteTable.Route route, String key) {
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        if (!isCurrent(cached.stamp)) {
+            cache.asMap().remove(key, cached);
+            return null;
+        }
+        bytesSaved(route).increment(cached.body.length);
+        return cached;
+    }
+    
+    // Only complete 200 responses small enough to be worth holding, fetched since the last write they depend on,
+    // are stored
+    public CachedResponse put(RouteTable.Route route, String key, Stamp stamp, RequestCoalescer.BufferedResponse response) {
+        CachedResponse entry = new CachedResponse(response, route.getCacheTtl(), stamp);
+        if (response.getStatus() == 200 && response.getBody().length <= maxEntryBytes && isCurrent(stamp)) {
+            cache.put(key, entry);
+        }
+        return entry;
+    }
+    
+    // For answering with ETag and cache headers without storing, e.g. a response shared by another caller's fetch
+    public CachedResponse wrap(RouteTable.Route route, RequestCoalescer.BufferedResponse response) {
+        return new CachedResponse(response, route.getCacheTtl(), null);
+    }
+    
+    // Creating or deleting changes listings and counts of every shape, so it drops the whole route for every
+    // principal; any other write drops the item it targets and the route's listing
+    public void invalidate(RouteTable.Route route, String target, HttpMethod method) {
+        if (method == HttpMethod.POST || method == HttpMethod.DELETE) {
+            generations.incrementAndGet(slot(route.getId()));
+        } else {
+            generations.incrementAndGet(slot(route.getId() + " " + route.resourceOf(target)));
+            generations.incrementAndGet(slot(route.getId() + " " + route.collection()));
+        }
+    }
+    
+    private boolean isCurrent(Stamp stamp) {
+        return stamp != null
+                && generations.get(stamp.routeSlot) == stamp.routeGeneration
+                && generations.get(stamp.resourceSlot) == stamp.resourceGeneration;
+    }
+    
+    private int slot(String name) {
+        int hash = name.hashCode();
+        return ((hash ^ (hash >>> 16)) & 0x7fffffff) % generations.length();
+    }
+    
+    public void notModified(RouteTable.Route route, CachedResponse entry) {
+        Counter.builder("gateway.cache.not.modified")
+                .description("Requests answered 304 because the client's ETag was still current")
+                .tag("route", route.getId())
+                .register(meterRegistry)
+                .increment();
+        Counter.builder("gateway.cache.client.bytes.saved")
+                .description("Response body bytes not sent to clients thanks to 304 answers")
+                .baseUnit("bytes")
+                .tag("route", route.getId())
+                .register(meterRegistry)
+                .increment(entry.body.length);
+    }
+    
+    private Counter bytesSaved(RouteTable.Route route) {
+        return Counter.builder("gateway.cache.backend.bytes.saved")
+                .description("Response body bytes served from cache instead of fetched from the backend")
+                .baseUnit("bytes")
+                .tag("route", route.getId())
+                .register(meterRegistry);
+    }
+    
+    public static class Stamp {
+        private final int routeSlot;
+        private final long routeGeneration;
+        private final int resourceSlot;
+        private final long resourceGeneration;
+        
+        Stamp(int routeSlot, long routeGeneration, int resourceSlot, long resourceGeneration) {
+            this.routeSlot = routeSlot;
+            this.routeGeneration = routeGeneration;
+            this.resourceSlot = resourceSlot;
+            this.resourceGeneration = resourceGeneration;
+        }
+    }
+    
+    public static class CachedResponse {
+        private final int status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        private final String etag;
+        private final Duration ttl;
+        private final Stamp stamp;
+        
+        CachedResponse(RequestCoalescer.BufferedResponse response, Duration ttl, Stamp stamp) {
+            this.status = response.getStatus();
+            this.headers = new HttpHeaders();
+            response.getHeaders().forEach((name, values) -> {
+                if (!UNCACHED_HEADERS.contains(name.toLowerCase())) {
+                    headers.put(name, values);
+                }
+            });
+            this.body = response.getBody();
+            this.etag = "W/\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+            this.ttl = ttl;
+            this.stamp = stamp;
+        }
+        
+        public int getStatus() { return status; }
+        
+        public HttpHeaders getHeaders() { return headers; }
+        
+        public byte[] getBody() { return body; }
+        
+        public String getEtag() { return etag; }
+        
+        // If-None-Match may list several tags; weak comparison ignores the W/ prefix
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            String opaque = etag.substring(2);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals(opaque)
+                        || (trimmed.startsWith("W/") && trimmed.substring(2).equals(opaque))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
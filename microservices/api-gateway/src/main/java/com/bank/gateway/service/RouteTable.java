@@ -0,0 +1,328 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.DownstreamServicesProperties;
+import com.bank.gateway.config.GatewayRoutesProperties;
+import com.bank.gateway.config.GatewayRoutesProperties.RouteDefinition;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@Component
+public class RouteTable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RouteTable.class);
+    
+    // Returned when a route matches the path but none of the routes on it accept the method
+    public static final Route METHOD_NOT_ALLOWED = new Route(placeholder("method-not-allowed"), "", null, null);
+    
+    private final Node root;
+    
+    private final List<Route> routes = new ArrayList<>();
+    
+    // The table is compiled once into a radix trie; resolve() only walks it and allocates nothing
+    public RouteTable(GatewayRoutesProperties routesProperties, DownstreamServicesProperties services,
+                      CloseableHttpClient gatewayHttpClient, AbortableRequestFactory gatewayRequestFactory) {
+        BuildNode buildRoot = new BuildNode();
+        for (RouteDefinition definition : routesProperties.getRoutes()) {
+            Route route = compile(definition, services, gatewayHttpClient, gatewayRequestFactory);
+            routes.add(route);
+            BuildNode node = buildRoot;
+            for (char c : route.pathPrefix.toCharArray()) {
+                node = node.children.computeIfAbsent(c, key -> new BuildNode());
+            }
+            node.routes.add(route);
+            logger.info("Route {}: {} {} -> {}{}", route.id, route.methods.isEmpty() ? "*" : route.methods,
+                    route.pathPrefix, route.service, route.rewritePrefix);
+        }
+        this.root = buildRoot.freeze("");
+    }
+    
+    // Longest path-prefix match that ends on a segment boundary and accepts the method
+    public Route resolve(String path, HttpMethod method) {
+        Node node = root;
+        Route best = null;
+        boolean pathMatched = false;
+        int length = path.length();
+        
+        int i = 0;
+        while (true) {
+            if (node.routes != null && (i == length || path.charAt(i) == '/')) {
+                for (Route route : node.routes) {
+                    pathMatched = true;
+                    if (route.methods.isEmpty() || route.methods.contains(method)) {
+                        best = route;
+                        break;
+                    }
+                }
+            }
+            if (i == length) {
+                break;
+            }
+            Node child = node.child(path.charAt(i));
+            if (child == null || !path.startsWith(child.label, i)) {
+                break;
+            }
+            i += child.label.length();
+            node = child;
+        }
+        
+        if (best == null && pathMatched) {
+            return METHOD_NOT_ALLOWED;
+        }
+        return best;
+    }
+    
+    public List<Route> getRoutes() {
+        return routes;
+    }
+    
+    private Route compile(RouteDefinition definition, DownstreamServicesProperties services,
+                          CloseableHttpClient httpClient, AbortableRequestFactory sharedFactory) {
+        String prefix = definition.getPathPrefix();
+        if (prefix == null || !prefix.startsWith("/")) {
+            throw new RuntimeException("Route " + definition.getId() + " needs a path-prefix starting with /");
+        }
+        if (prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        
+        DownstreamServicesProperties.ServiceEndpoint service = services.get(definition.getService());
+        if (service == null || service.resolveInstances().isEmpty()) {
+            throw new RuntimeException("Route " + definition.getId() + " targets unknown service "
+                    + definition.getService());
+        }
+        
+        GatewayRoutesProperties.RateLimitDefinition rateLimit = definition.getRateLimit();
+        if (rateLimit != null && rateLimit.getCapacity() != null
+                && rateLimit.getCapacity() > TokenBucket.MAX_CAPACITY) {
+            throw new RuntimeException("Route " + definition.getId() + " rate-limit capacity exceeds "
+                    + TokenBucket.MAX_CAPACITY);
+        }
+        
+        AbortableRequestFactory requestFactory = sharedFactory;
+        if (definition.getTimeout() != null) {
+            // Same pooled client, but a per-request response timeout in place of the service default
+            AbortableRequestFactory routeFactory = new AbortableRequestFactory(httpClient);
+            routeFactory.setReadTimeout(definition.getTimeout());
+            requestFactory = routeFactory;
+        }
+        
+        for (String readOnlyPath : definition.getReadOnlyPaths()) {
+            if (!readOnlyPath.startsWith("/")) {
+                throw new RuntimeException("Route " + definition.getId() + " read-only path " + readOnlyPath
+                        + " must start with /");
+            }
+        }
+        for (String suffix : definition.getPassthroughSuffixes()) {
+            if (!suffix.startsWith("/")) {
+                throw new RuntimeException("Route " + definition.getId() + " passthrough suffix " + suffix
+                        + " must start with /");
+            }
+        }
+        
+        Duration timeout = definition.getTimeout() != null ? definition.getTimeout() : service.getResponseTimeout();
+        return new Route(definition, prefix, requestFactory, timeout);
+    }
+    
+    // A definition that matches nothing, for routes the table hands out but never builds from configuration
+    private static RouteDefinition placeholder(String id) {
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(id);
+        definition.setService("");
+        return definition;
+    }
+    
+    public static class Route {
+        private final String id;
+        private final String pathPrefix;
+        private final String service;
+        private final String rewritePrefix;
+        private final Set<HttpMethod> methods;
+        private final AbortableRequestFactory requestFactory;
+        private final boolean coalesce;
+        private final Duration cacheTtl;
+        private final Set<String> readOnlyTargets;
+        private final List<String> passthroughSuffixes;
+        private final String affinityMarker;
+        private final boolean hedge;
+        private final GatewayRoutesProperties.RateLimitDefinition rateLimit;
+        private final Duration timeout;
+        // Set when the route has its own circuit breaker and bulkhead
+        private final Integer maxConcurrentCalls;
+        
+        // Settings come from the validated definition; pathPrefix is its prefix without a trailing slash, and
+        // requestFactory and timeout are the route's own or its service's
+        Route(RouteDefinition definition, String pathPrefix, AbortableRequestFactory requestFactory, Duration timeout) {
+            this.id = definition.getId();
+            this.pathPrefix = pathPrefix;
+            this.service = definition.getService();
+            this.rewritePrefix = definition.getRewritePrefix() != null ? definition.getRewritePrefix() : pathPrefix;
+            Set<HttpMethod> methods = new HashSet<>();
+            for (String method : definition.getMethods()) {
+                methods.add(HttpMethod.valueOf(method.toUpperCase()));
+            }
+            this.methods = Set.copyOf(methods);
+            this.requestFactory = requestFactory;
+            this.coalesce = definition.isCoalesce();
+            this.cacheTtl = definition.getCacheTtl();
+            Set<String> readOnlyTargets = new HashSet<>();
+            for (String readOnlyPath : definition.getReadOnlyPaths()) {
+                readOnlyTargets.add(rewritePrefix + readOnlyPath);
+            }
+            this.readOnlyTargets = Set.copyOf(readOnlyTargets);
+            this.passthroughSuffixes = List.copyOf(definition.getPassthroughSuffixes());
+            String affinitySegment = definition.getAffinitySegment();
+            this.affinityMarker = affinitySegment != null ? "/" + affinitySegment + "/" : null;
+            this.hedge = definition.isHedge();
+            this.rateLimit = definition.getRateLimit();
+            this.timeout = timeout;
+            this.maxConcurrentCalls = definition.getMaxConcurrentCalls();
+        }
+        
+        public String getId() { return id; }
+        
+        public String getService() { return service; }
+        
+        public Set<HttpMethod> getMethods() { return methods; }
+        
+        public AbortableRequestFactory getRequestFactory() { return requestFactory; }
+        
+        public boolean isCoalesce() { return coalesce; }
+        
+        public Duration getCacheTtl() { return cacheTtl; }
+        
+        public boolean isHedge() { return hedge; }
+        
+        public GatewayRoutesProperties.RateLimitDefinition getRateLimit() { return rateLimit; }
+        
+        public Duration getTimeout() { return timeout; }
+        
+        public Integer getMaxConcurrentCalls() { return maxConcurrentCalls; }
+        
+        // Circuit breaker and bulkhead name for the route's calls: the service's, unless the route has its own
+        public String getGuardKey() {
+            return maxConcurrentCalls != null ? service + "/" + id : service;
+        }
+        
+        // /api/customers/42 with prefix /api/customers rewritten to /customers -> /customers/42, resolved against an
+        // instance per call
+        public String targetPath(String path) {
+            return rewritePrefix + path.substring(pathPrefix.length());
+        }
+        
+        // Writes to the route's read-only paths, such as login, leave what it caches valid
+        public boolean isReadOnly(String target) {
+            int query = target.indexOf('?');
+            return readOnlyTargets.contains(query < 0 ? target : target.substring(0, query));
+        }
+        
+        // Streams such as /transactions/customer/42/stream are proxied as they come, whatever the route's read settings
+        public boolean isPassthrough(String target) {
+            int query = target.indexOf('?');
+            int end = query < 0 ? target.length() : query;
+            for (String suffix : passthroughSuffixes) {
+                if (target.startsWith(suffix, end - suffix.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        // The item a target addresses: /customers/42/activate -> /customers/42; the listing /customers?page=2 and
+        // /customers/ -> /customers
+        public String resourceOf(String target) {
+            int end = target.indexOf('?');
+            if (end < 0) {
+                end = target.length();
+            }
+            int start = rewritePrefix.length() + 1;
+            if (start >= end) {
+                return rewritePrefix;
+            }
+            int slash = target.indexOf('/', start);
+            return target.substring(0, slash < 0 || slash > end ? end : slash);
+        }
+        
+        // The route's own listing, e.g. /customers
+        public String collection() {
+            return rewritePrefix;
+        }
+        
+        // /transactions/customer/1001001/recent with affinity segment customer -> 1001001; null when absent
+        public String affinityKey(String target) {
+            if (affinityMarker == null) {
+                return null;
+            }
+            int marker = target.indexOf(affinityMarker);
+            if (marker < 0) {
+                return null;
+            }
+            int start = marker + affinityMarker.length();
+            int end = start;
+            while (end < target.length() && target.charAt(end) != '/' && target.charAt(end) != '?') {
+                end++;
+            }
+            return end > start ? target.substring(start, end) : null;
+        }
+    }
+    
+    private static class Node {
+        // Characters on the edge into this node; chains without branches or routes collapse into one label
+        private final String label;
+        private final char[] keys;
+        private final Node[] children;
+        private final Route[] routes;
+        
+        Node(String label, char[] keys, Node[] children, Route[] routes) {
+            this.label = label;
+            this.keys = keys;
+            this.children = children;
+            this.routes = routes;
+        }
+        
+        // Fan-out per node is a handful of keys, where a linear scan beats a binary search
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+    
+    private static class BuildNode {
+        private final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        private final List<Route> routes = new ArrayList<>();
+        
+        // Routes with a method filter are tried before catch-all routes on the same prefix
+        Node freeze(String label) {
+            char[] keys = new char[children.size()];
+            Node[] frozen = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, BuildNode> entry : children.entrySet()) {
+                StringBuilder edge = new StringBuilder().append(entry.getKey());
+                BuildNode next = entry.getValue();
+                while (next.routes.isEmpty() && next.children.size() == 1) {
+                    Map.Entry<Character, BuildNode> only = next.children.firstEntry();
+                    edge.append(only.getKey());
+                    next = only.getValue();
+                }
+                keys[i] = entry.getKey();
+                frozen[i++] = next.freeze(edge.toString());
+            }
+            routes.sort((a, b) -> Boolean.compare(a.methods.isEmpty(), b.methods.isEmpty()));
+            return new Node(label, keys, frozen, routes.isEmpty() ? null : routes.toArray(new Route[0]));
+        }
+    }
+}
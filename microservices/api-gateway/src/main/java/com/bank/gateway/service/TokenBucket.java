@@ -0,0 +1,66 @@
+package com.bank.gateway.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free token bucket: the token count and the last refill time share one long, so a single CAS updates both
+public class TokenBucket {
+    
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    // Tokens are held in thousandths, so refilling N tokens per second adds exactly N per millisecond
+    private static final long SCALE = 1000;
+    public static final int MAX_CAPACITY = (int) (TOKEN_MASK / SCALE);
+    
+    // Millisecond clock for the upper 40 bits, counted from class load so it fits for decades of uptime
+    private static final long CLOCK_BASE = System.nanoTime();
+    
+    private final long capacity;
+    private final long refillPerMilli;
+    private final AtomicLong state;
+    
+    public TokenBucket(int capacity, int refillPerSecond, long nowMillis) {
+        if (capacity < 1 || capacity > MAX_CAPACITY || refillPerSecond < 1) {
+            throw new RuntimeException("Token bucket needs 1.." + MAX_CAPACITY + " capacity and a positive refill rate");
+        }
+        this.capacity = capacity * SCALE;
+        this.refillPerMilli = refillPerSecond;
+        this.state = new AtomicLong(pack(nowMillis, this.capacity));
+    }
+    
+    public static long now() {
+        return (System.nanoTime() - CLOCK_BASE) / 1_000_000;
+    }
+    
+    // Takes one token and returns the whole tokens left, or returns minus the milliseconds until one is available
+    public long tryAcquire(long nowMillis) {
+        while (true) {
+            long current = state.get();
+            long refilledAt = current >>> TOKEN_BITS;
+            long tokens = current & TOKEN_MASK;
+            
+            long elapsed = nowMillis - refilledAt;
+            if (elapsed > 0) {
+                // Clamping elapsed first keeps the multiplication from overflowing after a long idle spell
+                tokens = Math.min(capacity, tokens + Math.min(elapsed, capacity) * refillPerMilli);
+                refilledAt = nowMillis;
+            }
+            
+            if (tokens < SCALE) {
+                // Nothing is written on rejection, so a flood of denied requests causes no CAS traffic
+                return -Math.max(1, (SCALE - tokens + refillPerMilli - 1) / refillPerMilli);
+            }
+            long remaining = tokens - SCALE;
+            if (state.compareAndSet(current, pack(refilledAt, remaining))) {
+                return remaining / SCALE;
+            }
+        }
+    }
+    
+    public int getCapacity() {
+        return (int) (capacity / SCALE);
+    }
+    
+    private static long pack(long millis, long tokens) {
+        return (millis << TOKEN_BITS) | tokens;
+    }
+}
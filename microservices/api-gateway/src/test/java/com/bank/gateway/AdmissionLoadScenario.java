@@ -0,0 +1,165 @@
+package com.bank.gateway;
+
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Overload scenario for admission control: 24 closed-loop bulk readers saturate a small gateway in front of two
+// stub services (2 workers at 40 ms each, so 50 req/s apiece) while 2 login and 2 posting loops measure what the
+// critical class sees. Runs once with admission off and once with it on. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> com.bank.gateway.AdmissionLoadScenario [seconds]
+public class AdmissionLoadScenario {
+    
+    private static final int BULK_READERS = 24;
+    
+    private static final int CRITICAL_LOOPS = 2;
+    
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        HttpServer customers = stub();
+        HttpServer transactions = stub();
+        try {
+            for (boolean admission : new boolean[] {false, true}) {
+                run(admission, seconds, customers.getAddress().getPort(), transactions.getAddress().getPort());
+            }
+        } finally {
+            for (HttpServer stub : List.of(customers, transactions)) {
+                stub.stop(0);
+                ((ExecutorService) stub.getExecutor()).shutdown();
+            }
+        }
+    }
+    
+    private static void run(boolean admission, int seconds, int customerPort, int transactionPort) throws Exception {
+        ConfigurableApplicationContext gateway = SpringApplication.run(ApiGatewayApplication.class,
+                "--server.port=0",
+                "--server.tomcat.threads.max=16",
+                "--logging.level.root=ERROR",
+                "--logging.level.com.bank=ERROR",
+                "--gateway.rate-limit.enabled=false",
+                "--gateway.concurrency-limit.enabled=false",
+                "--gateway.admission.enabled=" + admission,
+                "--gateway.admission.max-concurrent=4",
+                "--gateway.admission.max-queue=8",
+                "--services.customer.url=http://localhost:" + customerPort,
+                "--services.transaction.instances[0]=http://localhost:" + transactionPort);
+        String base = "http://localhost:" + gateway.getEnvironment().getProperty("local.server.port");
+        
+        ExecutorService clientThreads = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        ExecutorService loops = Executors.newCachedThreadPool();
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        
+        List<Long> logins = Collections.synchronizedList(new ArrayList<>());
+        List<Long> postings = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger bulkOk = new AtomicInteger();
+        AtomicInteger bulkShed = new AtomicInteger();
+        
+        for (int i = 0; i < BULK_READERS; i++) {
+            loops.submit(() -> {
+                HttpRequest read = HttpRequest.newBuilder(URI.create(base + "/api/transactions")).GET().build();
+                while (System.nanoTime() < end) {
+                    HttpResponse<Void> response = client.send(read, HttpResponse.BodyHandlers.discarding());
+                    boolean measured = System.nanoTime() >= measureFrom;
+                    if (response.statusCode() == 503) {
+                        if (measured) {
+                            bulkShed.incrementAndGet();
+                        }
+                        long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1);
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(retryAfter));
+                    } else if (measured) {
+                        bulkOk.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        for (int i = 0; i < CRITICAL_LOOPS; i++) {
+            loops.submit(() -> timedLoop(client, HttpRequest.newBuilder(URI.create(base + "/api/customers/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"load\",\"password\":\"load\"}"))
+                    .build(), measureFrom, end, logins));
+            loops.submit(() -> timedLoop(client, HttpRequest.newBuilder(URI.create(base + "/api/transactions/customer/1001001"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":10,\"type\":\"DEPOSIT\"}"))
+                    .build(), measureFrom, end, postings));
+        }
+        
+        loops.shutdown();
+        loops.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        clientThreads.shutdown();
+        gateway.close();
+        
+        System.out.printf("admission %-3s  login p50/p99 %4d / %4d ms   posting p50/p99 %4d / %4d ms   bulk %5.1f ok/s, %d shed%n",
+                admission ? "on" : "off", percentile(logins, 50), percentile(logins, 99),
+                percentile(postings, 50), percentile(postings, 99), bulkOk.get() / (double) seconds, bulkShed.get());
+    }
+    
+    // Pauses 100 ms between requests, as an interactive client would, and records latency once warmed up
+    private static Void timedLoop(HttpClient client, HttpRequest request, long measureFrom, long end,
+                                  List<Long> latencies) throws Exception {
+        while (System.nanoTime() < end) {
+            long started = System.nanoTime();
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (started >= measureFrom) {
+                latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+            Thread.sleep(100);
+        }
+        return null;
+    }
+    
+    private static long percentile(List<Long> latencies, int percentile) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        if (sorted.isEmpty()) {
+            return -1;
+        }
+        Collections.sort(sorted);
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+    }
+    
+    // Any path answers {} after 40 ms, two requests at a time
+    private static HttpServer stub() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            try {
+                Thread.sleep(40);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = "{}".getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
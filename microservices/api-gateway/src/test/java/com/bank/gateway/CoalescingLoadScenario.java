@@ -0,0 +1,143 @@
+package com.bank.gateway;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Backend calls for identical concurrent GETs, as when many employee screens open the same few loans at once. 32
+// closed-loop clients read 4 hot records through the loans route (coalesce: true) and then, as the control, through
+// the transactions route, which does not coalesce. Both stubs answer in 50 ms and have a worker per client, so the
+// backend is never the bottleneck and the only difference is coalescing. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> com.bank.gateway.CoalescingLoadScenario [seconds]
+public class CoalescingLoadScenario {
+    
+    private static final int CLIENTS = 32;
+    
+    private static final int HOT_RECORDS = 4;
+    
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        // Otherwise the stubs' header and body writes wait on delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        AtomicInteger loanCalls = new AtomicInteger();
+        AtomicInteger transactionCalls = new AtomicInteger();
+        HttpServer loans = stub("/loans", loanCalls);
+        HttpServer transactions = stub("/transactions", transactionCalls);
+        ConfigurableApplicationContext gateway = SpringApplication.run(ApiGatewayApplication.class,
+                "--server.port=0",
+                "--logging.level.root=ERROR",
+                "--logging.level.com.bank=ERROR",
+                "--logging.level.com.bank.gateway=ERROR",
+                "--gateway.rate-limit.enabled=false",
+                "--gateway.concurrency-limit.enabled=false",
+                "--gateway.admission.enabled=false",
+                "--services.loan.instances[0]=http://localhost:" + loans.getAddress().getPort(),
+                "--services.loan.max-concurrent-calls=" + 2 * CLIENTS,
+                "--services.transaction.instances[0]=http://localhost:" + transactions.getAddress().getPort(),
+                "--services.transaction.max-concurrent-calls=" + 2 * CLIENTS);
+        try {
+            String base = "http://localhost:" + gateway.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            
+            run(client, base + "/api/loans/", loanCalls, seconds, "loans (coalesce)");
+            run(client, base + "/api/transactions/", transactionCalls, seconds, "transactions (control)");
+            
+            DistributionSummary fanout = gateway.getBean(MeterRegistry.class).find("gateway.coalesce.fanout")
+                    .tag("route", "loans").summary();
+            System.out.printf("gateway.coalesce.fanout on loans: mean %.1f clients per call, max %.0f%n",
+                    fanout.mean(), fanout.max());
+        } finally {
+            gateway.close();
+            for (HttpServer stub : List.of(loans, transactions)) {
+                stub.stop(0);
+                ((ExecutorService) stub.getExecutor()).shutdown();
+            }
+        }
+    }
+    
+    private static void run(HttpClient client, String prefix, AtomicInteger backendCalls, int seconds, String label)
+            throws Exception {
+        ExecutorService loops = Executors.newFixedThreadPool(CLIENTS);
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicInteger callsBefore = new AtomicInteger(-1);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        
+        for (int i = 0; i < CLIENTS; i++) {
+            loops.submit(() -> {
+                while (System.nanoTime() < end) {
+                    String id = String.valueOf(1 + ThreadLocalRandom.current().nextInt(HOT_RECORDS));
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(prefix + id)).GET().build();
+                    long started = System.nanoTime();
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException(prefix + id + " answered " + response.statusCode());
+                    }
+                    if (started >= measureFrom) {
+                        callsBefore.compareAndSet(-1, backendCalls.get());
+                        latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                    }
+                }
+                return null;
+            });
+        }
+        loops.shutdown();
+        loops.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        
+        int calls = backendCalls.get() - callsBefore.get();
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%-24s %,7d client GETs  %,7d backend calls  (%.1f GETs per call)  p50 %d ms  p99 %d ms%n",
+                label, sorted.size(), calls, sorted.size() / (double) calls, sorted.get(sorted.size() / 2),
+                sorted.get(sorted.size() * 99 / 100));
+    }
+    
+    // Counts and answers {} after 50 ms for paths under the prefix; health probes are answered at once
+    private static HttpServer stub(String prefix, AtomicInteger calls) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 128);
+        server.setExecutor(Executors.newFixedThreadPool(CLIENTS));
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            if (exchange.getRequestURI().getPath().startsWith(prefix)) {
+                calls.incrementAndGet();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] response = "{}".getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
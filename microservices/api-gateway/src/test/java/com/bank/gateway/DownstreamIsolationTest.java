@@ -0,0 +1,165 @@
+package com.bank.gateway;
+
+import com.bank.gateway.service.DownstreamGuard;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Fault injection: the transaction service stops answering while the customer service stays healthy. The stalled
+// calls fill the transaction bulkhead and further transaction calls are turned away at once, while customer calls
+// keep their own guard closed and stay fast
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DownstreamIsolationTest {
+    
+    private static final int TRANSACTION_SLOTS = 4;
+    
+    // Gives way when the test ends, or after the response timeout has long passed
+    private static final CountDownLatch stall = new CountDownLatch(1);
+    
+    private static final HttpServer customers = stub(false);
+    
+    private static final HttpServer transactions = stub(true);
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private DownstreamGuard downstreamGuard;
+    
+    @DynamicPropertySource
+    static void downstreams(DynamicPropertyRegistry registry) {
+        registry.add("services.customer.url", () -> "http://localhost:" + customers.getAddress().getPort());
+        registry.add("services.transaction.instances[0]",
+                () -> "http://localhost:" + transactions.getAddress().getPort());
+        registry.add("services.transaction.max-concurrent-calls", () -> TRANSACTION_SLOTS);
+        registry.add("services.transaction.response-timeout", () -> "20s");
+        registry.add("gateway.rate-limit.enabled", () -> false);
+        registry.add("logging.level.com.bank.gateway", () -> "WARN");
+    }
+    
+    @AfterEach
+    void release() {
+        stall.countDown();
+    }
+    
+    @Test
+    void stalledServiceDoesNotSlowOrTripOtherRoutes() throws Exception {
+        List<CompletableFuture<HttpResponse<Void>>> stalled = new ArrayList<>();
+        for (int i = 0; i < TRANSACTION_SLOTS; i++) {
+            stalled.add(client.sendAsync(get("/api/transactions?page=" + i), HttpResponse.BodyHandlers.discarding()));
+        }
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (concurrentCalls("transaction") < TRANSACTION_SLOTS) {
+            assertTrue(System.nanoTime() < waitUntil, "stalled calls never filled the transaction bulkhead");
+            Thread.sleep(10);
+        }
+        
+        // One more transaction call is refused without waiting on the stalled service
+        long started = System.nanoTime();
+        HttpResponse<Void> rejected = client.send(get("/api/transactions?page=99"),
+                HttpResponse.BodyHandlers.discarding());
+        assertEquals(503, rejected.statusCode());
+        assertTrue(millisSince(started) < 1000, "rejection took " + millisSince(started) + " ms");
+        
+        for (int i = 0; i < 50; i++) {
+            started = System.nanoTime();
+            HttpResponse<Void> response = client.send(get("/api/customers/" + (1_000_000 + i)),
+                    HttpResponse.BodyHandlers.discarding());
+            long millis = millisSince(started);
+            assertEquals(200, response.statusCode());
+            assertTrue(millis < 1000, "customer call " + i + " took " + millis + " ms");
+        }
+        
+        Map<String, Object> customer = guard("customer");
+        assertEquals("CLOSED", String.valueOf(customer.get("state")));
+        assertEquals(0, customer.get("concurrentCalls"));
+        assertEquals(0, ((Number) customer.get("failedCalls")).intValue());
+        assertEquals(TRANSACTION_SLOTS, concurrentCalls("transaction"));
+        
+        stall.countDown();
+        for (CompletableFuture<HttpResponse<Void>> response : stalled) {
+            assertEquals(200, response.get(10, TimeUnit.SECONDS).statusCode());
+        }
+    }
+    
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+    }
+    
+    private int concurrentCalls(String service) {
+        return (Integer) guard(service).get("concurrentCalls");
+    }
+    
+    private Map<String, Object> guard(String service) {
+        for (Map<String, Object> guard : downstreamGuard.describe()) {
+            if (service.equals(guard.get("service"))) {
+                return guard;
+            }
+        }
+        throw new AssertionError("No guard for " + service);
+    }
+    
+    private static long millisSince(long started) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+    
+    // Answers {} at once, or for a stalling stub only once the test releases it; health probes are always answered
+    private static HttpServer stub(boolean stalling) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+            server.setExecutor(Executors.newFixedThreadPool(16));
+            server.createContext("/", exchange -> {
+                try (InputStream body = exchange.getRequestBody()) {
+                    body.readAllBytes();
+                }
+                if (stalling && !exchange.getRequestURI().getPath().startsWith("/actuator")) {
+                    try {
+                        stall.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] response = "{}".getBytes();
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.bank.gateway;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Tail latency of GET /api/transactions/customer/{ssn} with hedging off and on. The gateway fronts two stub
+// transaction-service instances that answer in 2 ms, except that 1 request in 100 stalls for 200 ms on whichever
+// instance it lands, as a GC pause or a slow disk would. 8 closed-loop clients run for the given time after a
+// warm-up long enough for the hedge delay to settle. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> com.bank.gateway.HedgeLatencyScenario [seconds]
+public class HedgeLatencyScenario {
+    
+    private static final int CLIENTS = 8;
+    
+    private static final int CUSTOMERS = 500;
+    
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        // Otherwise the stubs' header and body writes wait on delayed ACKs, adding 40 ms to every call
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer first = stub();
+        HttpServer second = stub();
+        try {
+            for (boolean hedge : new boolean[] {false, true}) {
+                run(hedge, seconds, first.getAddress().getPort(), second.getAddress().getPort());
+            }
+        } finally {
+            for (HttpServer stub : List.of(first, second)) {
+                stub.stop(0);
+                ((ExecutorService) stub.getExecutor()).shutdown();
+            }
+        }
+    }
+    
+    private static void run(boolean hedge, int seconds, int firstPort, int secondPort) throws Exception {
+        ConfigurableApplicationContext gateway = SpringApplication.run(ApiGatewayApplication.class,
+                "--server.port=0",
+                "--logging.level.root=ERROR",
+                "--logging.level.com.bank=ERROR",
+                "--logging.level.com.bank.gateway=ERROR",
+                "--gateway.rate-limit.enabled=false",
+                "--gateway.concurrency-limit.enabled=false",
+                "--gateway.admission.enabled=false",
+                "--gateway.hedge.enabled=" + hedge,
+                "--gateway.hedge.window=2s",
+                "--services.transaction.instances[0]=http://localhost:" + firstPort,
+                "--services.transaction.instances[1]=http://localhost:" + secondPort);
+        String base = "http://localhost:" + gateway.getEnvironment().getProperty("local.server.port");
+        
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        ExecutorService loops = Executors.newFixedThreadPool(CLIENTS);
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(6);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        
+        for (int i = 0; i < CLIENTS; i++) {
+            loops.submit(() -> {
+                while (System.nanoTime() < end) {
+                    String ssn = String.valueOf(1_000_000 + ThreadLocalRandom.current().nextInt(CUSTOMERS));
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/api/transactions/customer/" + ssn))
+                            .GET()
+                            .build();
+                    long started = System.nanoTime();
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException("GET answered " + response.statusCode());
+                    }
+                    if (started >= measureFrom) {
+                        latencies.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+                    }
+                }
+                return null;
+            });
+        }
+        loops.shutdown();
+        loops.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        
+        MeterRegistry meters = gateway.getBean(MeterRegistry.class);
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("hedge %-3s  %,7d requests  p50 %6.2f  p99 %6.2f  p99.9 %6.2f  max %6.2f ms"
+                        + "   hedges sent %d, won %d, losers aborted %d%n",
+                hedge ? "on" : "off", sorted.size(), millis(sorted, 0.50), millis(sorted, 0.99),
+                millis(sorted, 0.999), sorted.get(sorted.size() - 1) / 1000.0,
+                count(meters, "gateway.hedge.sent"), count(meters, "gateway.hedge.won"),
+                count(meters, "gateway.hedge.aborted"));
+        gateway.close();
+    }
+    
+    private static double millis(List<Long> sorted, double percentile) {
+        return sorted.get(Math.min(sorted.size() - 1, (int) (sorted.size() * percentile))) / 1000.0;
+    }
+    
+    private static long count(MeterRegistry meters, String name) {
+        return (long) Search.in(meters).name(name).counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+    
+    // Any path answers {} after 2 ms, or after 200 ms for 1 request in 100
+    private static HttpServer stub() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 128);
+        server.setExecutor(Executors.newFixedThreadPool(32));
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(100) == 0 ? 200 : 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = "{}".getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            try {
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (IOException e) {
+                // The gateway aborted this call after the other instance answered
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,132 @@
+package com.bank.gateway;
+
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Throughput of GET /api/transactions through the gateway as transaction-service instances are added. Each stub
+// instance serves 2 requests at a time at 20 ms each, so one instance tops out at 100 req/s; the stubs sleep rather
+// than burn CPU, so what is measured is how evenly the gateway spreads calls, not the machine's core count. 4 closed-
+// loop clients per instance keep every instance busy. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> com.bank.gateway.LoadBalancerScalingScenario
+//        [seconds] [max instances]
+public class LoadBalancerScalingScenario {
+    
+    private static final int CLIENTS_PER_INSTANCE = 4;
+    
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        int maxInstances = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        // Otherwise the stubs' header and body writes wait on delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        
+        List<HttpServer> stubs = new ArrayList<>();
+        try {
+            for (int i = 0; i < maxInstances; i++) {
+                stubs.add(stub());
+            }
+            double single = 0;
+            for (int instances = 1; instances <= maxInstances; instances *= 2) {
+                double rate = run(stubs.subList(0, instances), seconds);
+                if (instances == 1) {
+                    single = rate;
+                }
+                System.out.printf("%d instance(s)  %7.1f req/s  %.2fx one instance (%.0f%% of linear)%n",
+                        instances, rate, rate / single, 100 * rate / (single * instances));
+            }
+        } finally {
+            for (HttpServer stub : stubs) {
+                stub.stop(0);
+                ((ExecutorService) stub.getExecutor()).shutdown();
+            }
+        }
+    }
+    
+    private static double run(List<HttpServer> instances, int seconds) throws Exception {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--logging.level.root=ERROR",
+                "--logging.level.com.bank=ERROR",
+                "--logging.level.com.bank.gateway=ERROR",
+                "--gateway.rate-limit.enabled=false",
+                "--gateway.concurrency-limit.enabled=false",
+                "--gateway.admission.enabled=false",
+                "--services.transaction.max-concurrent-calls=200"));
+        for (int i = 0; i < instances.size(); i++) {
+            arguments.add("--services.transaction.instances[" + i + "]=http://localhost:"
+                    + instances.get(i).getAddress().getPort());
+        }
+        ConfigurableApplicationContext gateway = SpringApplication.run(ApiGatewayApplication.class,
+                arguments.toArray(new String[0]));
+        String base = "http://localhost:" + gateway.getEnvironment().getProperty("local.server.port");
+        
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        int clients = CLIENTS_PER_INSTANCE * instances.size();
+        ExecutorService loops = Executors.newFixedThreadPool(clients);
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicInteger completed = new AtomicInteger();
+        
+        for (int i = 0; i < clients; i++) {
+            loops.submit(() -> {
+                HttpRequest read = HttpRequest.newBuilder(URI.create(base + "/api/transactions")).GET().build();
+                while (System.nanoTime() < end) {
+                    HttpResponse<Void> response = client.send(read, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException("GET /api/transactions answered " + response.statusCode());
+                    }
+                    if (System.nanoTime() >= measureFrom && System.nanoTime() < end) {
+                        completed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        loops.shutdown();
+        loops.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        gateway.close();
+        return completed.get() / (double) seconds;
+    }
+    
+    // Any path answers {} after 20 ms, two requests at a time
+    private static HttpServer stub() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = "{}".getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,109 @@
+package com.bank.gateway.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Smoothing of 0.5 and a queue-size of 4 keep every step exact: at full use the gradient limit moves to
+// half its old value plus half of (old × gradient + 4)
+class AdaptiveConcurrencyLimitTest {
+    
+    private static final long MILLIS = 1_000_000;
+    
+    @Test
+    void gradientGrowsWhileLatencyStaysWithinTolerance() {
+        AdaptiveConcurrencyLimit limit = gradient(1000);
+        
+        limit.onSample(10 * MILLIS, 20, false);
+        assertEquals(22, limit.getLimit());
+        assertEquals(10.0, limit.getBaselineRttMillis());
+        
+        // 15 ms is 1.5 × the baseline, still inside rtt-tolerance, so the cap keeps growing
+        limit.onSample(15 * MILLIS, 22, false);
+        assertEquals(24, limit.getLimit());
+        
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(10 * MILLIS, limit.getLimit(), false);
+        }
+        assertEquals(100, limit.getLimit());
+    }
+    
+    @Test
+    void gradientShrinksAsLatencyClimbs() {
+        AdaptiveConcurrencyLimit limit = gradient(1000);
+        limit.onSample(10 * MILLIS, 20, false);
+        assertEquals(22, limit.getLimit());
+        
+        // 30 ms against a 10 ms baseline is a gradient of 1.5 × 10 / 30 = 0.5
+        limit.onSample(30 * MILLIS, 22, false);
+        assertEquals(18, limit.getLimit());
+        limit.onSample(30 * MILLIS, 18, false);
+        assertEquals(15, limit.getLimit());
+        
+        // The gradient is floored at 0.5, so however slow the service gets the cap settles at 2 × queue-size
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(1000 * MILLIS, limit.getLimit(), false);
+        }
+        assertEquals(8, limit.getLimit());
+        assertEquals(10.0, limit.getBaselineRttMillis());
+    }
+    
+    @Test
+    void gradientIgnoresLatencyWhileTheCapIsUnderused() {
+        AdaptiveConcurrencyLimit limit = gradient(1000);
+        limit.onSample(10 * MILLIS, 20, false);
+        
+        limit.onSample(30 * MILLIS, 10, false);
+        assertEquals(22, limit.getLimit());
+    }
+    
+    @Test
+    void fastFailuresDoNotLowerTheBaseline() {
+        AdaptiveConcurrencyLimit limit = gradient(1000);
+        limit.onSample(10 * MILLIS, 20, false);
+        
+        limit.onSample(MILLIS, 22, true);
+        assertEquals(10.0, limit.getBaselineRttMillis());
+        assertEquals(22, limit.getLimit());
+    }
+    
+    @Test
+    void probeDropsToQueueSizeAndRelearnsTheBaseline() {
+        AdaptiveConcurrencyLimit limit = gradient(5);
+        for (int i = 0; i < 4; i++) {
+            limit.onSample(10 * MILLIS, limit.getLimit(), false);
+        }
+        assertEquals(28, limit.getLimit());
+        
+        limit.onSample(10 * MILLIS, 28, false);
+        assertEquals(4, limit.getLimit());
+        assertEquals(0.0, limit.getBaselineRttMillis());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 1, limit.tryAcquire());
+        }
+        assertEquals(-1, limit.tryAcquire());
+        
+        // The backend has slowed since the last probe; the first sample after it is the new baseline
+        limit.onSample(30 * MILLIS, 4, false);
+        assertEquals(30.0, limit.getBaselineRttMillis());
+        assertEquals(6, limit.getLimit());
+    }
+    
+    @Test
+    void aimdAddsOneWhileInUseAndBacksOffOnDrops() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(AdaptiveConcurrencyLimit.Algorithm.AIMD,
+                20, 2, 100, 1.5, 0.5, 1000, 4, 0.5);
+        
+        limit.onSample(10 * MILLIS, 10, false);
+        assertEquals(21, limit.getLimit());
+        limit.onSample(10 * MILLIS, 5, false);
+        assertEquals(21, limit.getLimit());
+        limit.onSample(10 * MILLIS, 21, true);
+        assertEquals(10, limit.getLimit());
+    }
+    
+    private static AdaptiveConcurrencyLimit gradient(int probeInterval) {
+        return new AdaptiveConcurrencyLimit(AdaptiveConcurrencyLimit.Algorithm.GRADIENT,
+                20, 2, 100, 1.5, 0.5, probeInterval, 4, 0.9);
+    }
+}
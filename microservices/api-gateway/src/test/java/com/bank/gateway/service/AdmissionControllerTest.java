@@ -0,0 +1,211 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.AdmissionProperties;
+import com.bank.gateway.config.AdmissionProperties.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// One slot, so every further admit queues. Queue delays come from the test's clock; only blocking uses real time
+class AdmissionControllerTest {
+    
+    private static final long MILLIS = 1_000_000;
+    
+    private final AtomicLong now = new AtomicLong();
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    private final AdmissionProperties properties = new AdmissionProperties();
+    
+    private final AdmissionController controller = new AdmissionController();
+    
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    
+    @BeforeEach
+    void setUp() {
+        properties.setMaxConcurrent(1);
+        properties.setMaxQueue(4);
+        properties.setTarget(Duration.ofMillis(20));
+        properties.setInterval(Duration.ofMillis(100));
+        Map<Priority, Duration> maxWait = new EnumMap<>(Priority.class);
+        maxWait.put(Priority.CRITICAL, Duration.ofSeconds(10));
+        maxWait.put(Priority.NORMAL, Duration.ofSeconds(10));
+        maxWait.put(Priority.BULK, Duration.ofMillis(50));
+        properties.setMaxWait(maxWait);
+        
+        ReflectionTestUtils.setField(controller, "properties", properties);
+        ReflectionTestUtils.setField(controller, "meterRegistry", meterRegistry);
+        controller.init();
+        controller.setClock(now::get);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+    
+    @Test
+    void freedSlotGoesToTheHighestClassThenInArrivalOrder() throws Exception {
+        controller.admit(Priority.NORMAL);
+        Future<?> bulk = queue(Priority.NORMAL);
+        Future<?> firstCritical = queue(Priority.CRITICAL);
+        Future<?> secondCritical = queue(Priority.CRITICAL);
+        
+        controller.release();
+        firstCritical.get(1, TimeUnit.SECONDS);
+        assertFalse(secondCritical.isDone());
+        assertFalse(bulk.isDone());
+        
+        controller.release();
+        secondCritical.get(1, TimeUnit.SECONDS);
+        controller.release();
+        bulk.get(1, TimeUnit.SECONDS);
+        
+        // Each handoff kept the slot occupied; the last release frees it
+        assertEquals(1.0, gauge("gateway.admission.in.flight"));
+        controller.release();
+        assertEquals(0.0, gauge("gateway.admission.in.flight"));
+    }
+    
+    @Test
+    void waiterGivesUpAfterItsClassMaxWait() throws Exception {
+        controller.admit(Priority.NORMAL);
+        Future<?> bulk = queue(Priority.BULK);
+        
+        assertRejected(bulk, "Timed out");
+        assertEquals(0.0, gauge("gateway.admission.queued"));
+        assertEquals(1.0, meterRegistry.get("gateway.admission.rejected").tag("reason", "timeout").counter().count());
+        
+        // The timed-out waiter no longer holds a place, so the slot is simply freed
+        controller.release();
+        assertEquals(0.0, gauge("gateway.admission.in.flight"));
+    }
+    
+    @Test
+    void fullQueueRejectsAllButCritical() throws Exception {
+        controller.admit(Priority.NORMAL);
+        for (int i = 0; i < properties.getMaxQueue(); i++) {
+            queue(Priority.NORMAL);
+        }
+        
+        assertThrows(DownstreamGuard.RejectedException.class, () -> controller.admit(Priority.NORMAL));
+        Future<?> critical = queue(Priority.CRITICAL);
+        
+        controller.release();
+        critical.get(1, TimeUnit.SECONDS);
+    }
+    
+    @Test
+    void delayOverTargetForAnIntervalShedsTheLowestClassAndRecoveryRestoresIt() throws Exception {
+        controller.admit(Priority.CRITICAL);
+        
+        // 30 ms in the queue starts the interval, and 110 ms once it has passed sheds bulk along with what it had queued
+        Future<?> first = queue(Priority.NORMAL);
+        Future<?> second = queue(Priority.NORMAL);
+        Future<?> queuedBulk = queue(Priority.BULK, Duration.ofSeconds(10));
+        now.set(30 * MILLIS);
+        controller.release();
+        first.get(1, TimeUnit.SECONDS);
+        now.set(140 * MILLIS);
+        controller.release();
+        second.get(1, TimeUnit.SECONDS);
+        assertEquals(1.0, gauge("gateway.admission.shed.classes"));
+        assertRejected(queuedBulk, "shedding bulk");
+        
+        // New bulk arrivals that would have to queue are turned away straight away; normal ones still queue
+        assertThrows(DownstreamGuard.RejectedException.class, () -> controller.admit(Priority.BULK));
+        Future<?> normal = queue(Priority.NORMAL);
+        
+        // Another full interval over target sheds normal too, but never critical
+        now.set(250 * MILLIS);
+        controller.release();
+        normal.get(1, TimeUnit.SECONDS);
+        assertEquals(2.0, gauge("gateway.admission.shed.classes"));
+        assertThrows(DownstreamGuard.RejectedException.class, () -> controller.admit(Priority.NORMAL));
+        Future<?> critical = queue(Priority.CRITICAL);
+        now.set(360 * MILLIS);
+        controller.release();
+        critical.get(1, TimeUnit.SECONDS);
+        assertEquals(2.0, gauge("gateway.admission.shed.classes"));
+        
+        // Back under target: one class comes back per interval, not all at once
+        controller.release();
+        now.set(470 * MILLIS);
+        controller.admit(Priority.CRITICAL);
+        assertEquals(1.0, gauge("gateway.admission.shed.classes"));
+        controller.release();
+        now.set(480 * MILLIS);
+        controller.admit(Priority.CRITICAL);
+        assertEquals(1.0, gauge("gateway.admission.shed.classes"));
+        controller.release();
+        now.set(570 * MILLIS);
+        controller.admit(Priority.CRITICAL);
+        assertEquals(0.0, gauge("gateway.admission.shed.classes"));
+        
+        Future<?> bulk = queue(Priority.BULK, Duration.ofSeconds(10));
+        controller.release();
+        bulk.get(1, TimeUnit.SECONDS);
+    }
+    
+    @Test
+    void disabledControllerAdmitsEverything() {
+        properties.setEnabled(false);
+        for (int i = 0; i < 10; i++) {
+            controller.admit(Priority.BULK);
+        }
+        assertEquals(0.0, gauge("gateway.admission.in.flight"));
+    }
+    
+    private Future<?> queue(Priority priority) throws InterruptedException {
+        return queue(priority, null);
+    }
+    
+    // Starts an admit on another thread and returns once it is waiting in the queue
+    private Future<?> queue(Priority priority, Duration maxWait) throws InterruptedException {
+        if (maxWait != null) {
+            properties.getMaxWait().put(priority, maxWait);
+        }
+        double before = gauge("gateway.admission.queued");
+        Future<?> admitted = callers.submit(() -> controller.admit(priority));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (gauge("gateway.admission.queued") == before) {
+            if (admitted.isDone() || System.nanoTime() > deadline) {
+                fail(priority + " admit did not queue");
+            }
+            Thread.sleep(1);
+        }
+        return admitted;
+    }
+    
+    private void assertRejected(Future<?> admitted, String message) throws Exception {
+        try {
+            admitted.get(1, TimeUnit.SECONDS);
+            fail("admit should have been rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DownstreamGuard.RejectedException);
+            assertTrue(e.getCause().getMessage().contains(message), e.getCause().getMessage());
+        }
+    }
+    
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+}
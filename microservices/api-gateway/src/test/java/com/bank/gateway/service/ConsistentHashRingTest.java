@@ -0,0 +1,123 @@
+package com.bank.gateway.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+    
+    private static final int VIRTUAL_NODES = 160;
+    
+    private static final int KEYS = 100_000;
+    
+    // Affinity keys are customer SSN ids, so the keys are sequential numbers rather than random strings
+    private static final List<String> SSN_IDS = new ArrayList<>();
+    
+    static {
+        for (int i = 0; i < KEYS; i++) {
+            SSN_IDS.add(String.valueOf(1_000_000 + i));
+        }
+    }
+    
+    @Test
+    void addingANodeMovesAboutOneNthOfTheKeysAndOnlyToIt() {
+        ConsistentHashRing<String> before = ring(instances(5));
+        ConsistentHashRing<String> after = ring(instances(6));
+        String added = instances(6).get(5);
+        
+        int moved = 0;
+        for (String key : SSN_IDS) {
+            String owner = after.locate(key);
+            if (!owner.equals(before.locate(key))) {
+                assertEquals(added, owner, "key " + key + " moved between existing nodes");
+                moved++;
+            }
+        }
+        assertNear(1.0 / 6, (double) moved / KEYS);
+    }
+    
+    @Test
+    void removingANodeMovesOnlyItsOwnKeys() {
+        ConsistentHashRing<String> before = ring(instances(5));
+        List<String> remaining = new ArrayList<>(instances(5));
+        String removed = remaining.remove(2);
+        ConsistentHashRing<String> after = ring(remaining);
+        
+        int moved = 0;
+        for (String key : SSN_IDS) {
+            String previous = before.locate(key);
+            if (!previous.equals(after.locate(key))) {
+                assertEquals(removed, previous, "key " + key + " moved off a node that stayed");
+                moved++;
+            }
+        }
+        assertNear(1.0 / 5, (double) moved / KEYS);
+    }
+    
+    @Test
+    void loadSkewStaysBounded() {
+        for (int nodes : new int[] {2, 3, 5, 10}) {
+            Map<String, Integer> load = load(ring(instances(nodes)));
+            assertEquals(nodes, load.size());
+            double mean = (double) KEYS / nodes;
+            int max = load.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+            assertTrue(max / mean < 1.25, nodes + " nodes: max/mean " + (max / mean));
+        }
+    }
+    
+    @Test
+    void filteredNodeOnlyShedsItsOwnKeys() {
+        ConsistentHashRing<String> ring = ring(instances(4));
+        String down = instances(4).get(1);
+        
+        for (String key : SSN_IDS.subList(0, 10_000)) {
+            String owner = ring.locate(key);
+            String fallback = ring.locate(key, node -> !node.equals(down));
+            if (owner.equals(down)) {
+                assertNotEquals(down, fallback);
+            } else {
+                assertEquals(owner, fallback);
+            }
+        }
+        assertNull(ring.locate("1000001", node -> false));
+    }
+    
+    @Test
+    void emptyRingLocatesNothing() {
+        assertNull(ring(List.of()).locate("1000001"));
+    }
+    
+    private static ConsistentHashRing<String> ring(List<String> nodes) {
+        return new ConsistentHashRing<>(nodes, Function.identity(), VIRTUAL_NODES);
+    }
+    
+    private static List<String> instances(int count) {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            urls.add("http://localhost:" + (8083 + 10 * i));
+        }
+        return urls;
+    }
+    
+    private static Map<String, Integer> load(ConsistentHashRing<String> ring) {
+        Map<String, Integer> load = new HashMap<>();
+        for (String key : SSN_IDS) {
+            load.merge(ring.locate(key), 1, Integer::sum);
+        }
+        return load;
+    }
+    
+    // Within a quarter of the ideal share either way
+    private static void assertNear(double expected, double actual) {
+        assertTrue(Math.abs(actual - expected) < expected / 4, "moved " + actual + ", expected about " + expected);
+    }
+}
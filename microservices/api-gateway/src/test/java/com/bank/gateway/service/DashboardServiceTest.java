@@ -0,0 +1,149 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.dto.DashboardResponse;
+import com.bank.gateway.dto.DashboardResponse.FieldStatus;
+import com.bank.security.IdentityAssertion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// All four backends are one local stub that answers each count path after a per-path delay. A single fanout thread
+// runs the calls one after another, which is how a queued call behaves when the pool is busy
+class DashboardServiceTest {
+    
+    private final Map<String, Long> delays = new ConcurrentHashMap<>();
+    
+    private HttpServer stub;
+    
+    private DashboardService dashboardService;
+    
+    @AfterEach
+    void tearDown() {
+        if (dashboardService != null) {
+            dashboardService.shutdown();
+        }
+        if (stub != null) {
+            stub.stop(0);
+            ((ExecutorService) stub.getExecutor()).shutdownNow();
+        }
+    }
+    
+    @Test
+    void queuedCallsGetTheirOwnCallTimeout() throws IOException {
+        delay(150);
+        dashboardService = dashboardService(1, 400, 2000);
+        
+        // The last call finishes 600 ms in, well past 400 ms, but none ran for more than 150 ms
+        DashboardResponse dashboard = dashboardService.getDashboardSummary();
+        assertFalse(dashboard.isPartial(), "status " + dashboard.getStatus());
+        assertEquals(5L, dashboard.getTotalCustomers());
+        assertEquals(3L, dashboard.getTotalEmployees());
+        assertEquals(2L, dashboard.getTotalLoanRequests());
+        assertEquals(100.5, dashboard.getTotalBankBalance());
+    }
+    
+    @Test
+    void overallDeadlineCapsCallsThatStartLate() throws IOException {
+        delay(200);
+        dashboardService = dashboardService(1, 2000, 500);
+        
+        // Calls end at 200, 400, 600 and 800 ms; the last two are past the deadline
+        DashboardResponse dashboard = dashboardService.getDashboardSummary();
+        assertEquals(FieldStatus.OK, dashboard.getStatus().get("totalCustomers"));
+        assertEquals(FieldStatus.OK, dashboard.getStatus().get("totalEmployees"));
+        assertEquals(FieldStatus.UNAVAILABLE, dashboard.getStatus().get("totalLoanRequests"));
+        assertEquals(FieldStatus.UNAVAILABLE, dashboard.getStatus().get("totalBankBalance"));
+    }
+    
+    @Test
+    void hungCallTimesOutAfterCallTimeoutNotTheDeadline() throws IOException {
+        delay(0);
+        delays.put("/customers/count", 5000L);
+        dashboardService = dashboardService(4, 300, 3000);
+        
+        long started = System.nanoTime();
+        DashboardResponse dashboard = dashboardService.getDashboardSummary();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        
+        assertTrue(millis < 1500, "dashboard took " + millis + " ms");
+        assertEquals(FieldStatus.UNAVAILABLE, dashboard.getStatus().get("totalCustomers"));
+        assertEquals(FieldStatus.OK, dashboard.getStatus().get("totalEmployees"));
+        assertEquals(FieldStatus.OK, dashboard.getStatus().get("totalLoanRequests"));
+        assertEquals(FieldStatus.OK, dashboard.getStatus().get("totalBankBalance"));
+    }
+    
+    private void delay(long millis) {
+        for (String path : new String[] {"/customers/count", "/employees/count", "/loans/count",
+                "/transactions/total-balance"}) {
+            delays.put(path, millis);
+        }
+    }
+    
+    private DashboardService dashboardService(int threads, long callTimeoutMs, long deadlineMs) throws IOException {
+        stub = stub();
+        String url = "http://localhost:" + stub.getAddress().getPort();
+        
+        IdentityAssertion identityAssertion = new IdentityAssertion();
+        ReflectionTestUtils.setField(identityAssertion, "secret", "dashboard-service-test-secret");
+        ReflectionTestUtils.setField(identityAssertion, "ttlSeconds", 30L);
+        identityAssertion.init();
+        
+        DashboardService service = new DashboardService(threads, 8);
+        ReflectionTestUtils.setField(service, "restTemplate", new RestTemplate());
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "identityAssertion", identityAssertion);
+        ReflectionTestUtils.setField(service, "customerServiceUrl", url);
+        ReflectionTestUtils.setField(service, "employeeServiceUrl", url);
+        ReflectionTestUtils.setField(service, "transactionServiceUrl", url);
+        ReflectionTestUtils.setField(service, "loanServiceUrl", url);
+        ReflectionTestUtils.setField(service, "callTimeoutMs", callTimeoutMs);
+        ReflectionTestUtils.setField(service, "deadlineMs", deadlineMs);
+        return service;
+    }
+    
+    private HttpServer stub() throws IOException {
+        Map<String, String> bodies = Map.of(
+                "/customers/count", "5",
+                "/employees/count", "3",
+                "/loans/count", "{\"count\":2}",
+                "/transactions/total-balance", "100.5");
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 16);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            String path = exchange.getRequestURI().getPath();
+            try {
+                Thread.sleep(delays.getOrDefault(path, 0L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = bodies.getOrDefault(path, "0").getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,192 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.DownstreamServicesProperties;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Ejection times come from the test's clock; health probes go to a local stub. Periodic probing is pushed out
+// of the way so only the probes the test runs happen
+class LoadBalancerTest {
+    
+    private static final String SERVICE = "transaction";
+    
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    
+    private final List<HttpServer> stubs = new ArrayList<>();
+    
+    private LoadBalancer loadBalancer;
+    
+    @AfterEach
+    void tearDown() {
+        if (loadBalancer != null) {
+            loadBalancer.shutdown();
+        }
+        stubs.forEach(stub -> stub.stop(0));
+    }
+    
+    @Test
+    void powerOfTwoChoicesPicksTheLessLoadedInstance() {
+        loadBalancer = loadBalancer(urls(2), null);
+        LoadBalancer.Instance busy = loadBalancer.choose(SERVICE);
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.onStart(busy);
+        }
+        
+        // With two instances both are always sampled, so the idle one wins every time
+        for (int i = 0; i < 1000; i++) {
+            assertNotEquals(busy, loadBalancer.choose(SERVICE));
+        }
+    }
+    
+    @Test
+    void powerOfTwoChoicesKeepsOutstandingCallsEven() {
+        loadBalancer = loadBalancer(urls(4), null);
+        Map<LoadBalancer.Instance, Integer> picks = new HashMap<>();
+        for (int i = 0; i < 4000; i++) {
+            LoadBalancer.Instance chosen = loadBalancer.choose(SERVICE);
+            loadBalancer.onStart(chosen);
+            picks.merge(chosen, 1, Integer::sum);
+        }
+        
+        assertEquals(4, picks.size());
+        int fewest = picks.values().stream().min(Integer::compare).orElseThrow();
+        int most = picks.values().stream().max(Integer::compare).orElseThrow();
+        assertTrue(most - fewest <= 4, "outstanding calls ranged from " + fewest + " to " + most);
+    }
+    
+    @Test
+    void consecutiveFailuresEjectAnInstanceUntilItsTimeIsUp() {
+        loadBalancer = loadBalancer(urls(4), null);
+        LoadBalancer.Instance failing = loadBalancer.choose(SERVICE);
+        
+        // A success in between resets the count
+        for (int i = 0; i < 4; i++) {
+            loadBalancer.onFailure(failing);
+        }
+        loadBalancer.onSuccess(failing);
+        for (int i = 0; i < 4; i++) {
+            loadBalancer.onFailure(failing);
+        }
+        assertEquals(4, loadBalancer.countAvailable(SERVICE));
+        
+        loadBalancer.onFailure(failing);
+        assertEquals(3, loadBalancer.countAvailable(SERVICE));
+        for (int i = 0; i < 1000; i++) {
+            assertNotEquals(failing, loadBalancer.choose(SERVICE));
+        }
+        
+        now.addAndGet(Duration.ofSeconds(30).toMillis() - 1);
+        assertEquals(3, loadBalancer.countAvailable(SERVICE));
+        now.incrementAndGet();
+        assertEquals(4, loadBalancer.countAvailable(SERVICE));
+        
+        // A repeat offender stays out for twice the base time
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.onFailure(failing);
+        }
+        now.addAndGet(Duration.ofSeconds(30).toMillis());
+        assertEquals(3, loadBalancer.countAvailable(SERVICE));
+        now.addAndGet(Duration.ofSeconds(30).toMillis());
+        assertEquals(4, loadBalancer.countAvailable(SERVICE));
+    }
+    
+    @Test
+    void ejectionStopsAtMaxPercentOfTheInstances() {
+        loadBalancer = loadBalancer(urls(2), null);
+        LoadBalancer.Instance first = loadBalancer.choose(SERVICE);
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.onFailure(first);
+        }
+        LoadBalancer.Instance second = loadBalancer.choose(SERVICE);
+        assertNotEquals(first, second);
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.onFailure(second);
+        }
+        
+        // Ejecting the second as well would leave nothing, so it keeps taking traffic
+        assertEquals(1, loadBalancer.countAvailable(SERVICE));
+        assertSame(second, loadBalancer.choose(SERVICE));
+    }
+    
+    @Test
+    void healthProbesTakeAnInstanceOutAndBringItBack() throws IOException {
+        AtomicInteger status = new AtomicInteger(200);
+        HttpServer stub = HttpServer.create(new InetSocketAddress("localhost", 0), 16);
+        stub.createContext("/health", exchange -> {
+            exchange.sendResponseHeaders(status.get(), -1);
+            exchange.close();
+        });
+        stub.start();
+        stubs.add(stub);
+        loadBalancer = loadBalancer(List.of("http://localhost:" + stub.getAddress().getPort()), "/health");
+        
+        status.set(503);
+        probeAll();
+        assertEquals(1, loadBalancer.countAvailable(SERVICE));
+        probeAll();
+        assertEquals(0, loadBalancer.countAvailable(SERVICE));
+        
+        status.set(200);
+        probeAll();
+        assertEquals(1, loadBalancer.countAvailable(SERVICE));
+    }
+    
+    private void probeAll() {
+        ReflectionTestUtils.invokeMethod(loadBalancer, "probeAll");
+    }
+    
+    private LoadBalancer loadBalancer(List<String> urls, String healthPath) {
+        DownstreamServicesProperties.ServiceEndpoint endpoint = new DownstreamServicesProperties.ServiceEndpoint();
+        endpoint.setInstances(new ArrayList<>(urls));
+        endpoint.setHealthPath(healthPath);
+        DownstreamServicesProperties services = new DownstreamServicesProperties();
+        services.put(SERVICE, endpoint);
+        
+        LoadBalancer balancer = new LoadBalancer();
+        ReflectionTestUtils.setField(balancer, "services", services);
+        ReflectionTestUtils.setField(balancer, "gatewayConnectionManager", new PoolingHttpClientConnectionManager());
+        ReflectionTestUtils.setField(balancer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(balancer, "strategy", "p2c");
+        ReflectionTestUtils.setField(balancer, "probeInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(balancer, "probeTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(balancer, "unhealthyThreshold", 2);
+        ReflectionTestUtils.setField(balancer, "healthyThreshold", 1);
+        ReflectionTestUtils.setField(balancer, "ejectionConsecutiveFailures", 5);
+        ReflectionTestUtils.setField(balancer, "ejectionBaseTime", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(balancer, "ejectionMaxTime", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(balancer, "ejectionMaxPercent", 50);
+        ReflectionTestUtils.setField(balancer, "virtualNodes", 160);
+        ReflectionTestUtils.setField(balancer, "allowedHosts", Set.of("localhost"));
+        balancer.setClock(now::get);
+        balancer.init();
+        return balancer;
+    }
+    
+    private static List<String> urls(int count) {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            urls.add("http://localhost:" + (18_000 + i));
+        }
+        return urls;
+    }
+}
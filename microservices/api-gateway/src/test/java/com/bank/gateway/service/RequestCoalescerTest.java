@@ -0,0 +1,67 @@
+package com.bank.gateway.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+    
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", new SimpleMeterRegistry());
+    }
+    
+    @Test
+    void leadershipDoesNotDependOnTheCheckingThread() throws Exception {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            RequestCoalescer.Ticket leader = coalescer.join("customers", "key");
+            RequestCoalescer.Ticket follower = other.submit(() -> coalescer.join("customers", "key")).get();
+            
+            // Checked on threads other than the ones that joined
+            assertTrue(other.submit(leader::isLeader).get());
+            assertFalse(follower.isLeader());
+            assertSame(leader.getFlight(), follower.getFlight());
+        } finally {
+            other.shutdownNow();
+        }
+    }
+    
+    @Test
+    void followersReceiveTheLeadersResponse() throws Exception {
+        RequestCoalescer.Ticket leader = coalescer.join("customers", "key");
+        CompletableFuture<RequestCoalescer.BufferedResponse> shared =
+                coalescer.join("customers", "key").getFlight().getResult();
+        
+        RequestCoalescer.BufferedResponse response =
+                new RequestCoalescer.BufferedResponse(200, new HttpHeaders(), new byte[] {1});
+        CompletableFuture.runAsync(() -> coalescer.complete(leader.getFlight(), response)).get();
+        
+        assertSame(response, shared.get(1, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void keyIsFreeAgainOnceTheFlightSettles() {
+        RequestCoalescer.Ticket first = coalescer.join("customers", "key");
+        coalescer.fail(first.getFlight(), new RuntimeException("down"));
+        
+        RequestCoalescer.Ticket second = coalescer.join("customers", "key");
+        assertTrue(second.isLeader());
+        assertNotSame(first.getFlight(), second.getFlight());
+        assertTrue(first.getFlight().getResult().isCompletedExceptionally());
+    }
+}
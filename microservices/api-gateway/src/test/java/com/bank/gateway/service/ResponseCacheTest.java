@@ -0,0 +1,104 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.GatewayRoutesProperties.RouteDefinition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCacheTest {
+    
+    private final ResponseCache cache = new ResponseCache();
+    
+    private RouteTable.Route customers;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 1024);
+        cache.initCache();
+        
+        RouteDefinition definition = RouteTableTest.route("customers", "/api/customers", "customer", "/customers");
+        definition.setCacheTtl(Duration.ofMinutes(1));
+        definition.setReadOnlyPaths(List.of("/login"));
+        customers = RouteTableTest.table(definition).resolve("/api/customers", HttpMethod.GET);
+    }
+    
+    @Test
+    void updateDropsTheItemAndTheListingOnly() {
+        store("/customers/1");
+        store("/customers/2");
+        store("/customers?page=0");
+        
+        cache.invalidate(customers, "/customers/1/activate", HttpMethod.PUT);
+        
+        assertNull(lookup("/customers/1"));
+        assertNull(lookup("/customers?page=0"));
+        assertNotNull(lookup("/customers/2"));
+    }
+    
+    @Test
+    void createOrDeleteDropsTheWholeRoute() {
+        store("/customers/1");
+        store("/customers/count");
+        
+        cache.invalidate(customers, "/customers/2", HttpMethod.DELETE);
+        
+        assertNull(lookup("/customers/1"));
+        assertNull(lookup("/customers/count"));
+    }
+    
+    @Test
+    void fetchThatOverlappedAWriteIsNotStored() {
+        ResponseCache.Stamp before = cache.stamp(customers, "/customers/1");
+        cache.invalidate(customers, "/customers/1", HttpMethod.PUT);
+        
+        ResponseCache.CachedResponse entry = cache.put(customers, key("/customers/1"), before, ok());
+        
+        assertEquals(200, entry.getStatus());
+        assertNull(lookup("/customers/1"));
+        store("/customers/1");
+        assertNotNull(lookup("/customers/1"));
+    }
+    
+    @Test
+    void readOnlyPathsAndResourcesResolveFromTheTarget() {
+        assertTrue(customers.isReadOnly("/customers/login"));
+        assertTrue(customers.isReadOnly("/customers/login?next=x"));
+        assertFalse(customers.isReadOnly("/customers/1"));
+        
+        assertEquals("/customers/1", customers.resourceOf("/customers/1/activate"));
+        assertEquals("/customers/1", customers.resourceOf("/customers/1?full=true"));
+        assertEquals("/customers", customers.resourceOf("/customers?page=2"));
+        assertEquals("/customers", customers.resourceOf("/customers/"));
+        assertEquals("/customers", customers.resourceOf("/customers"));
+    }
+    
+    private void store(String target) {
+        cache.put(customers, key(target), cache.stamp(customers, target), ok());
+    }
+    
+    private ResponseCache.CachedResponse lookup(String target) {
+        return cache.get(customers, key(target));
+    }
+    
+    private String key(String target) {
+        return cache.key(customers, "user:alice null " + target);
+    }
+    
+    private static RequestCoalescer.BufferedResponse ok() {
+        return new RequestCoalescer.BufferedResponse(200, new HttpHeaders(), "{}".getBytes());
+    }
+}
@@ -0,0 +1,78 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.GatewayRoutesProperties.RouteDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Route lookup for the configured table plus extra routes, against a linear startsWith scan over the same
+// prefixes. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main RouteTableBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteTableBenchmark {
+    
+    @Param({"6", "50"})
+    private int routes;
+    
+    @Param({"/api/customers/1001001", "/api/transactions/customer/1001001/stream", "/api/unknown/1"})
+    private String path;
+    
+    private RouteTable table;
+    
+    private String[] prefixes;
+    
+    @Setup
+    public void setUp() {
+        List<RouteDefinition> definitions = new ArrayList<>(List.of(
+                RouteTableTest.route("customers", "/api/customers", "customer", "/customers"),
+                RouteTableTest.route("employees", "/api/employees", "customer", "/employees"),
+                RouteTableTest.route("transactions-bulk", "/api/transactions/bulk", "transaction",
+                        "/transactions/bulk", "POST"),
+                RouteTableTest.route("transactions-by-customer", "/api/transactions/customer", "transaction",
+                        "/transactions/customer", "GET"),
+                RouteTableTest.route("transactions", "/api/transactions", "transaction", "/transactions"),
+                RouteTableTest.route("loans", "/api/loans", "loan", "/loans")));
+        for (int i = definitions.size(); i < routes; i++) {
+            definitions.add(0, RouteTableTest.route("extra-" + i, "/api/extra" + i, "customer", "/extra" + i));
+        }
+        table = RouteTableTest.table(definitions.toArray(new RouteDefinition[0]));
+        // Longest first, as an if-chain over these prefixes has to be ordered
+        prefixes = definitions.stream()
+                .map(RouteDefinition::getPathPrefix)
+                .sorted((a, b) -> b.length() - a.length())
+                .toArray(String[]::new);
+    }
+    
+    @Benchmark
+    public RouteTable.Route trie() {
+        return table.resolve(path, HttpMethod.GET);
+    }
+    
+    @Benchmark
+    public String linearScan() {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/')) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,155 @@
+package com.bank.gateway.service;
+
+import com.bank.gateway.config.DownstreamServicesProperties;
+import com.bank.gateway.config.GatewayRoutesProperties;
+import com.bank.gateway.config.GatewayRoutesProperties.RouteDefinition;
+import com.bank.gateway.service.RouteTable.Route;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteTableTest {
+    
+    // Mirrors the shape of the application.yml table: nested prefixes, method filters and a catch-all parent
+    private final RouteTable table = table(
+            route("customers", "/api/customers", "customer", "/customers"),
+            route("transactions-bulk", "/api/transactions/bulk", "transaction", "/transactions/bulk", "POST"),
+            route("transactions-by-customer", "/api/transactions/customer", "transaction", "/transactions/customer", "GET"),
+            route("transactions", "/api/transactions", "transaction", "/transactions"),
+            route("reports", "/api/reports", "customer", "/reports", "GET"),
+            route("reports-export", "/api/reports", "customer", "/exports", "POST"),
+            route("loans", "/api/loans/", "loan", null));
+    
+    @Test
+    void longestPrefixWins() {
+        assertEquals("transactions-by-customer",
+                table.resolve("/api/transactions/customer/1001001/stream", HttpMethod.GET).getId());
+        assertEquals("transactions-bulk", table.resolve("/api/transactions/bulk", HttpMethod.POST).getId());
+        assertEquals("transactions", table.resolve("/api/transactions/42", HttpMethod.GET).getId());
+        assertEquals("transactions", table.resolve("/api/transactions", HttpMethod.GET).getId());
+    }
+    
+    @Test
+    void longerPrefixWithOtherMethodsFallsBackToShorterRoute() {
+        assertEquals("transactions", table.resolve("/api/transactions/customer/1001001", HttpMethod.POST).getId());
+        assertEquals("transactions", table.resolve("/api/transactions/bulk", HttpMethod.GET).getId());
+    }
+    
+    @Test
+    void prefixMatchesOnlyOnSegmentBoundary() {
+        assertEquals("customers", table.resolve("/api/customers", HttpMethod.GET).getId());
+        assertEquals("customers", table.resolve("/api/customers/", HttpMethod.GET).getId());
+        assertNull(table.resolve("/api/customersX", HttpMethod.GET));
+        assertEquals("transactions", table.resolve("/api/transactions/bulkload", HttpMethod.POST).getId());
+    }
+    
+    @Test
+    void unknownPathResolvesToNull() {
+        assertNull(table.resolve("/api/unknown/1", HttpMethod.GET));
+        assertNull(table.resolve("/", HttpMethod.GET));
+        assertNull(table.resolve("", HttpMethod.GET));
+        assertNull(table.resolve("/api", HttpMethod.GET));
+    }
+    
+    @Test
+    void pathWithoutRouteForMethodIsMethodNotAllowed() {
+        assertSame(RouteTable.METHOD_NOT_ALLOWED, table.resolve("/api/reports/daily", HttpMethod.DELETE));
+        assertSame(RouteTable.METHOD_NOT_ALLOWED, table.resolve("/api/reports", HttpMethod.PUT));
+    }
+    
+    @Test
+    void routesOnSamePrefixAreChosenByMethod() {
+        assertEquals("reports", table.resolve("/api/reports/daily", HttpMethod.GET).getId());
+        assertEquals("reports-export", table.resolve("/api/reports/daily", HttpMethod.POST).getId());
+    }
+    
+    @Test
+    void methodFilteredRouteIsTriedBeforeCatchAllOnSamePrefix() {
+        RouteTable catchAllFirst = table(
+                route("all", "/api/items", "customer", "/all"),
+                route("reads", "/api/items", "customer", "/reads", "GET"));
+        assertEquals("reads", catchAllFirst.resolve("/api/items/1", HttpMethod.GET).getId());
+        assertEquals("all", catchAllFirst.resolve("/api/items/1", HttpMethod.DELETE).getId());
+    }
+    
+    @Test
+    void targetPathRewritesPrefix() {
+        assertEquals("/customers/42", table.resolve("/api/customers/42", HttpMethod.GET).targetPath("/api/customers/42"));
+        assertEquals("/customers", table.resolve("/api/customers", HttpMethod.GET).targetPath("/api/customers"));
+        assertEquals("/transactions/customer/7/stream", table.resolve("/api/transactions/customer/7/stream", HttpMethod.GET)
+                .targetPath("/api/transactions/customer/7/stream"));
+    }
+    
+    @Test
+    void routeWithoutRewriteForwardsPathUnchangedAndIgnoresTrailingSlash() {
+        Route loans = table.resolve("/api/loans/9", HttpMethod.GET);
+        assertEquals("loans", loans.getId());
+        assertEquals("/api/loans/9", loans.targetPath("/api/loans/9"));
+        assertEquals("loans", table.resolve("/api/loans", HttpMethod.GET).getId());
+    }
+    
+    @Test
+    void affinityKeyIsTheSegmentAfterTheMarker() {
+        RouteDefinition definition = route("by-customer", "/api/transactions/customer", "transaction", "/transactions/customer");
+        definition.setAffinitySegment("customer");
+        Route route = table(definition).resolve("/api/transactions/customer/1001001", HttpMethod.GET);
+        
+        assertEquals("1001001", route.affinityKey("/transactions/customer/1001001/stream"));
+        assertEquals("1001001", route.affinityKey("/transactions/customer/1001001?limit=5"));
+        assertNull(route.affinityKey("/transactions/customer/"));
+        assertNull(route.affinityKey("/transactions/42"));
+        assertNull(table.resolve("/api/customers/1", HttpMethod.GET).affinityKey("/customers/1"));
+    }
+    
+    @Test
+    void passthroughSuffixMatchesPathEndOnly() {
+        RouteDefinition definition = route("transactions-by-customer", "/api/transactions/customer", "transaction",
+                "/transactions/customer", "GET");
+        definition.setPassthroughSuffixes(List.of("/stream"));
+        Route route = table(definition).resolve("/api/transactions/customer/1001001", HttpMethod.GET);
+        
+        assertTrue(route.isPassthrough("/transactions/customer/1001001/stream"));
+        assertTrue(route.isPassthrough("/transactions/customer/1001001/stream?from=2024-01-01"));
+        assertFalse(route.isPassthrough("/transactions/customer/1001001"));
+        assertFalse(route.isPassthrough("/transactions/customer/1001001/streams"));
+        assertFalse(route.isPassthrough("/transactions/customer/1001001?view=stream"));
+        assertFalse(table.resolve("/api/customers/1", HttpMethod.GET).isPassthrough("/customers/1/stream"));
+    }
+    
+    @Test
+    void invalidDefinitionsFailAtStartup() {
+        assertThrows(RuntimeException.class, () -> table(route("relative", "api/x", "customer", null)));
+        assertThrows(RuntimeException.class, () -> table(route("unknown", "/api/x", "billing", null)));
+    }
+    
+    static RouteTable table(RouteDefinition... definitions) {
+        DownstreamServicesProperties services = new DownstreamServicesProperties();
+        for (String name : List.of("customer", "transaction", "loan")) {
+            DownstreamServicesProperties.ServiceEndpoint endpoint = new DownstreamServicesProperties.ServiceEndpoint();
+            endpoint.setUrl("http://localhost:1");
+            services.put(name, endpoint);
+        }
+        GatewayRoutesProperties properties = new GatewayRoutesProperties();
+        properties.setRoutes(List.of(definitions));
+        // No route sets a timeout, so neither the client nor the shared request factory is used
+        return new RouteTable(properties, services, null, null);
+    }
+    
+    static RouteDefinition route(String id, String pathPrefix, String service, String rewritePrefix, String... methods) {
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(id);
+        definition.setPathPrefix(pathPrefix);
+        definition.setService(service);
+        definition.setRewritePrefix(rewritePrefix);
+        definition.setMethods(List.of(methods));
+        return definition;
+    }
+}
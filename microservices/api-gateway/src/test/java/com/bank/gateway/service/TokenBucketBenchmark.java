@@ -0,0 +1,72 @@
+package com.bank.gateway.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of one rate-limit decision: granted from a bucket every thread shares, rejected from an empty shared
+// bucket, and granted from a bucket per thread, against reading the clock alone. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main TokenBucketBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TokenBucketBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class Shared {
+        // Refills far faster than four threads can drain it, so every call takes the CAS path
+        TokenBucket granting;
+        // Never refills within a run, so every call is a rejection
+        TokenBucket empty;
+        
+        @Setup
+        public void setUp() {
+            granting = new TokenBucket(TokenBucket.MAX_CAPACITY, 1_000_000, TokenBucket.now());
+            empty = new TokenBucket(1, 1, 0);
+            empty.tryAcquire(0);
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class PerThread {
+        TokenBucket bucket;
+        
+        @Setup
+        public void setUp() {
+            bucket = new TokenBucket(TokenBucket.MAX_CAPACITY, 1_000_000, TokenBucket.now());
+        }
+    }
+    
+    @Benchmark
+    public long clockOnly() {
+        return TokenBucket.now();
+    }
+    
+    @Benchmark
+    public long sharedGranted(Shared shared) {
+        return shared.granting.tryAcquire(TokenBucket.now());
+    }
+    
+    @Benchmark
+    public long sharedRejected(Shared shared) {
+        return shared.empty.tryAcquire(0);
+    }
+    
+    @Benchmark
+    public long perThreadGranted(PerThread perThread) {
+        return perThread.bucket.tryAcquire(TokenBucket.now());
+    }
+}
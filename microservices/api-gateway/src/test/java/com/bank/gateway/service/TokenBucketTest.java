@@ -0,0 +1,119 @@
+package com.bank.gateway.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenBucketTest {
+    
+    @Test
+    void startsFullAndCountsDown() {
+        TokenBucket bucket = new TokenBucket(3, 1, 0);
+        
+        assertEquals(2, bucket.tryAcquire(0));
+        assertEquals(1, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(-1000, bucket.tryAcquire(0));
+    }
+    
+    @Test
+    void retryAfterIsTheTimeUntilTheNextWholeToken() {
+        TokenBucket slow = new TokenBucket(1, 1, 0);
+        slow.tryAcquire(0);
+        assertEquals(-1000, slow.tryAcquire(0));
+        assertEquals(-600, slow.tryAcquire(400));
+        assertEquals(-1, slow.tryAcquire(999));
+        assertEquals(0, slow.tryAcquire(1000));
+        
+        // 50 per second is one token every 20 ms; a partial millisecond rounds up, never down to zero
+        TokenBucket fast = new TokenBucket(1, 50, 0);
+        fast.tryAcquire(0);
+        assertEquals(-20, fast.tryAcquire(0));
+        assertEquals(-1, fast.tryAcquire(19));
+        assertEquals(0, fast.tryAcquire(20));
+        
+        TokenBucket uneven = new TokenBucket(1, 3, 0);
+        uneven.tryAcquire(0);
+        assertEquals(-334, uneven.tryAcquire(0));
+    }
+    
+    @Test
+    void refillsAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+        for (int i = 0; i < 10; i++) {
+            bucket.tryAcquire(0);
+        }
+        
+        // 5 per second: one token per 200 ms, and fractions carry over between calls
+        assertEquals(-100, bucket.tryAcquire(100));
+        assertEquals(0, bucket.tryAcquire(200));
+        assertEquals(-200, bucket.tryAcquire(200));
+        assertEquals(1, bucket.tryAcquire(600));
+        assertEquals(0, bucket.tryAcquire(600));
+    }
+    
+    @Test
+    void refillIsClampedToCapacityAfterAnyIdleTime() {
+        TokenBucket bucket = new TokenBucket(3, 1000, 0);
+        bucket.tryAcquire(0);
+        
+        assertEquals(2, bucket.tryAcquire(60_000));
+        
+        // Close to the top of the 40-bit clock, where an unclamped elapsed * rate would overflow
+        long later = (1L << 39) + 123;
+        TokenBucket idle = new TokenBucket(TokenBucket.MAX_CAPACITY, 1_000_000, 0);
+        idle.tryAcquire(0);
+        assertEquals(TokenBucket.MAX_CAPACITY - 1, idle.tryAcquire(later));
+    }
+    
+    @Test
+    void clockGoingBackwardsAddsNothing() {
+        TokenBucket bucket = new TokenBucket(1, 1, 5000);
+        bucket.tryAcquire(5000);
+        
+        assertEquals(-1000, bucket.tryAcquire(4000));
+        assertEquals(-500, bucket.tryAcquire(5500));
+    }
+    
+    @Test
+    void outOfRangeSettingsAreRejected() {
+        assertThrows(RuntimeException.class, () -> new TokenBucket(0, 1, 0));
+        assertThrows(RuntimeException.class, () -> new TokenBucket(TokenBucket.MAX_CAPACITY + 1, 1, 0));
+        assertThrows(RuntimeException.class, () -> new TokenBucket(1, 0, 0));
+        assertEquals(TokenBucket.MAX_CAPACITY, new TokenBucket(TokenBucket.MAX_CAPACITY, 1, 0).getCapacity());
+    }
+    
+    @Test
+    void concurrentCallersNeverGetMoreThanCapacity() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 1, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> granted = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                granted.add(pool.submit(() -> {
+                    int count = 0;
+                    for (int i = 0; i < 10_000; i++) {
+                        if (bucket.tryAcquire(0) >= 0) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : granted) {
+                total += future.get();
+            }
+            assertEquals(1000, total);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
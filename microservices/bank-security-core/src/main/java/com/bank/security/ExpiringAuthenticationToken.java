@@ -0,0 +1,20 @@
+package com.bank.security;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.Date;
+import java.util.List;
+
+// An authenticated principal together with the expiry of the JWT or identity assertion it was built from, so
+// tokens minted on its behalf can be made to expire no later
+public class ExpiringAuthenticationToken extends UsernamePasswordAuthenticationToken {
+    
+    private final Date expiresAt;
+    
+    public ExpiringAuthenticationToken(String principal, List<String> roles, Date expiresAt) {
+        super(principal, null, RoleAuthorities.of(roles));
+        this.expiresAt = expiresAt;
+    }
+    
+    public Date getExpiresAt() { return expiresAt; }
+}
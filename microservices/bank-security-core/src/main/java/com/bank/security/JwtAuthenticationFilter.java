@@ -0,0 +1,81 @@
+package com.bank.security;
+
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+// Authenticates a request from the gateway's identity assertion when it carries a valid one, and otherwise from its
+// bearer JWT. Services get this filter from SecurityCoreAutoConfiguration; the gateway subclasses it, since it must
+// not trust assertions sent by clients and signs one for each verified token instead
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    
+    @Autowired
+    private JwtService jwtService;
+    
+    @Autowired
+    private IdentityAssertion identityAssertion;
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        
+        IdentityAssertion.Identity identity = acceptsAssertions()
+                ? identityAssertion.verify(request.getHeader(IdentityAssertion.HEADER)) : null;
+        if (identity != null) {
+            // The gateway has already verified the JWT; direct callers fall through to full verification below
+            authenticate(request, identity.getPrincipal(), identity.getRoles(), identity.getExpiresAt());
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        String token = getTokenFromRequest(request);
+        
+        Claims claims = StringUtils.hasText(token) ? jwtService.extractValidClaims(token) : null;
+        if (claims != null) {
+            List<String> roles = JwtService.roles(claims);
+            authenticate(request, claims.getSubject(), roles, claims.getExpiration());
+            onTokenVerified(request, claims, roles);
+        }
+        
+        filterChain.doFilter(request, response);
+    }
+    
+    // Whether an X-Bank-Identity header is trusted in place of the JWT
+    protected boolean acceptsAssertions() {
+        return true;
+    }
+    
+    // Called once a bearer token has been verified and the request authenticated from it
+    protected void onTokenVerified(HttpServletRequest request, Claims claims, List<String> roles) {
+    }
+    
+    protected IdentityAssertion getIdentityAssertion() {
+        return identityAssertion;
+    }
+    
+    private void authenticate(HttpServletRequest request, String principal, List<String> roles, Date expiresAt) {
+        ExpiringAuthenticationToken authentication = new ExpiringAuthenticationToken(principal, roles, expiresAt);
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+    
+    private String getTokenFromRequest(HttpServletRequest request) {
+        String bearerToken = request.getHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,154 @@
+package com.bank.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+@Service
+public class JwtService {
+    
+    // Role names, e.g. ["EMPLOYEE"]; used directly as authority names
+    public static final String ROLES_CLAIM = "roles";
+    
+    @Value("${jwt.secret}")
+    private String secretKey;
+    
+    @Value("${jwt.expiration:86400000}")
+    private long jwtExpiration;
+    
+    @Value("${jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+    
+    // Only present in services with actuator
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+    
+    // Epoch milliseconds for minting, verification and cache expiry alike
+    private LongSupplier clock = System::currentTimeMillis;
+    
+    // Key and parser are immutable and thread-safe, so both are built once rather than per token
+    private Key signingKey;
+    
+    private JwtParser parser;
+    
+    // Claims of tokens whose signature has been checked, keyed by the token's SHA-256 so raw tokens are not held
+    // in memory; each entry lives until the token's own exp
+    private Cache<ByteBuffer, Claims> verified;
+    
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 unavailable", e);
+        }
+    });
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .setClock(() -> new Date(clock.getAsLong()))
+                .build();
+        verified = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<ByteBuffer, Claims>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer hash, Claims claims, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(
+                                Math.max(0, claims.getExpiration().getTime() - clock.getAsLong()));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer hash, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(ByteBuffer hash, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.getAsLong()))
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, verified, "verifiedTokens");
+        }
+    }
+    
+    // Lets tests expire tokens and cache entries without waiting; must be set before init
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+    
+    public String generateToken(String username) {
+        return generateToken(username, List.of(), jwtExpiration);
+    }
+    
+    public String generateToken(String username, List<String> roles) {
+        return generateToken(username, roles, jwtExpiration);
+    }
+    
+    public String generateToken(String username, List<String> roles, long expirationMillis) {
+        long now = clock.getAsLong();
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(username)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expirationMillis));
+        if (!roles.isEmpty()) {
+            builder.claim(ROLES_CLAIM, roles);
+        }
+        return builder.signWith(signingKey, SignatureAlgorithm.HS256).compact();
+    }
+    
+    // Parses and verifies at most once per token; returns null for an invalid or expired token. The returned
+    // claims are shared between requests and must not be modified
+    public Claims extractValidClaims(String token) {
+        ByteBuffer hash = ByteBuffer.wrap(digests.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+        Claims claims = verified.getIfPresent(hash);
+        if (claims == null) {
+            try {
+                claims = parser.parseClaimsJws(token).getBody();
+            } catch (JwtException | IllegalArgumentException e) {
+                return null;
+            }
+            // Tokens without an expiry were never accepted, and would otherwise stay cached indefinitely
+            if (claims.getExpiration() == null) {
+                return null;
+            }
+            verified.put(hash, claims);
+        }
+        return claims.getExpiration().getTime() < clock.getAsLong() ? null : claims;
+    }
+    
+    // Tokens minted before roles were added, and service tokens for principals without any, carry none
+    @SuppressWarnings("unchecked")
+    public static List<String> roles(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        return roles instanceof List ? (List<String>) roles : List.of();
+    }
+}
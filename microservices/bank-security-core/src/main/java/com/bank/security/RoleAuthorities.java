@@ -0,0 +1,57 @@
+package com.bank.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Authorities for the role names carried in tokens and identity assertions. Each role maps to one shared instance,
+// and the common single-role case to one shared list, so method security is resolved from the token alone
+public final class RoleAuthorities {
+    
+    // Keyed by role name; roles only come from tokens and assertions we signed, so the set stays small
+    private static final Map<String, List<GrantedAuthority>> SINGLE_ROLE = new ConcurrentHashMap<>();
+    
+    static {
+        for (String role : List.of("CUSTOMER", "EMPLOYEE", "MANAGER", ServiceTokenCache.SERVICE_ROLE)) {
+            single(role);
+        }
+    }
+    
+    private RoleAuthorities() {
+    }
+    
+    public static List<GrantedAuthority> of(List<String> roles) {
+        if (roles.isEmpty()) {
+            return List.of();
+        }
+        if (roles.size() == 1) {
+            return single(roles.get(0));
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (String role : roles) {
+            authorities.add(single(role).get(0));
+        }
+        return authorities;
+    }
+    
+    // Role names back from an Authentication built with of(); authorities from elsewhere, such as ROLE_ANONYMOUS,
+    // are left out
+    public static List<String> names(Collection<? extends GrantedAuthority> authorities) {
+        List<String> roles = new ArrayList<>(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            if (SINGLE_ROLE.containsKey(authority.getAuthority())) {
+                roles.add(authority.getAuthority());
+            }
+        }
+        return roles;
+    }
+    
+    private static List<GrantedAuthority> single(String role) {
+        return SINGLE_ROLE.computeIfAbsent(role, name -> List.of(new SimpleGrantedAuthority(name)));
+    }
+}
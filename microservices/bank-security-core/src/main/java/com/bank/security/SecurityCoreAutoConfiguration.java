@@ -0,0 +1,23 @@
+package com.bank.security;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+// Registers the shared token services in every application that has this module on its classpath, since
+// com.bank.security is outside each service's component scan
+@AutoConfiguration
+@Import({JwtService.class, IdentityAssertion.class, ServiceTokenCache.class})
+public class SecurityCoreAutoConfiguration {
+    
+    // Skipped where the application declares its own, as the gateway does; a second filter bean would also be
+    // registered with the servlet container and accept assertions there
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnMissingBean(JwtAuthenticationFilter.class)
+    public JwtAuthenticationFilter jwtAuthenticationFilter() {
+        return new JwtAuthenticationFilter();
+    }
+}
@@ -0,0 +1,135 @@
+package com.bank.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Authorization headers for calls made on behalf of a principal to another service. One token per principal is
+// minted and reused until refresh-before its expiry, instead of signing a fresh one for every remote call; reuse
+// also lets the receiving service answer from its verified-token cache. No token outlives the credential of the
+// caller it is handed to
+@Service
+public class ServiceTokenCache {
+    
+    // Held by tokens a service mints for itself, for calls that are not made on behalf of any one caller
+    public static final String SERVICE_ROLE = "SERVICE";
+    
+    @Autowired
+    private JwtService jwtService;
+    
+    // Only present in services with actuator
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+    
+    // The principal of tokens minted by serviceAuthorization()
+    @Value("${spring.application.name}")
+    private String serviceName;
+    
+    @Value("${jwt.service-token.ttl:15m}")
+    private Duration ttl;
+    
+    // Every token handed out has at least this long left, or half of what the caller's credential has left if that
+    // is shorter, so it cannot expire on the wire
+    @Value("${jwt.service-token.refresh-before:1m}")
+    private Duration refreshBefore;
+    
+    @Value("${jwt.service-token.cache-max-size:10000}")
+    private long cacheMaxSize;
+    
+    // Epoch milliseconds; must match the clock the JwtService mints with
+    private LongSupplier clock = System::currentTimeMillis;
+    
+    private Cache<String, ServiceToken> tokens;
+    
+    private Counter minted;
+    
+    @PostConstruct
+    public void init() {
+        if (refreshBefore.compareTo(ttl) >= 0) {
+            throw new RuntimeException("jwt.service-token.refresh-before must be shorter than jwt.service-token.ttl");
+        }
+        tokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(ttl.minus(refreshBefore))
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.getAsLong()))
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            // Lookups are cache.gets{cache=serviceTokens}; a hit can still be replaced if it would outlive the
+            // caller, so the tokens actually signed are counted separately
+            CaffeineCacheMetrics.monitor(meterRegistry, tokens, "serviceTokens");
+            minted = meterRegistry.counter("service.tokens.minted");
+        }
+    }
+    
+    // Lets tests move time for the cache and the JwtService together; must be set before init
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+    
+    // For the authenticated caller, capped at the expiry of the JWT or assertion it presented. Authentications
+    // built elsewhere carry no expiry and get a full-length token
+    public String authorization(Authentication caller) {
+        Date expiresAt = caller instanceof ExpiringAuthenticationToken
+                ? ((ExpiringAuthenticationToken) caller).getExpiresAt() : null;
+        return authorization(caller.getName(), RoleAuthorities.names(caller.getAuthorities()),
+                expiresAt != null ? expiresAt.getTime() : Long.MAX_VALUE);
+    }
+    
+    // For calls the service makes as itself, such as lookups batched across callers, which must not carry any one
+    // caller's identity
+    public String serviceAuthorization() {
+        return authorization(serviceName, List.of(SERVICE_ROLE), Long.MAX_VALUE);
+    }
+    
+    // "Bearer <token>" carrying the principal and its roles, expiring by callerExpiry (epoch millis); concurrent
+    // calls for one principal that need a new token mint a single one. Roles are part of the key, so a change of
+    // role is not hidden behind an older token
+    public String authorization(String principal, List<String> roles, long callerExpiry) {
+        String key = roles.isEmpty() ? principal : principal + " " + String.join(",", roles);
+        long now = clock.getAsLong();
+        ServiceToken token = tokens.getIfPresent(key);
+        if (token == null || !token.usableFor(callerExpiry, now)) {
+            long expiresAt = Math.min(now + ttl.toMillis(), callerExpiry);
+            token = tokens.asMap().compute(key, (ignored, current) ->
+                    current != null && current.usableFor(callerExpiry, now) ? current : mint(principal, roles, expiresAt, now));
+        }
+        return token.header;
+    }
+    
+    private ServiceToken mint(String principal, List<String> roles, long expiresAt, long now) {
+        if (minted != null) {
+            minted.increment();
+        }
+        return new ServiceToken("Bearer " + jwtService.generateToken(principal, roles, expiresAt - now), expiresAt);
+    }
+    
+    private class ServiceToken {
+        private final String header;
+        private final long expiresAt;
+        
+        ServiceToken(String header, long expiresAt) {
+            this.header = header;
+            this.expiresAt = expiresAt;
+        }
+        
+        // Never outlives the caller, and keeps refresh-before, or half the caller's remaining time, in hand
+        boolean usableFor(long callerExpiry, long now) {
+            return expiresAt <= callerExpiry
+                    && expiresAt - now >= Math.min(refreshBefore.toMillis(), (callerExpiry - now) / 2);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.bank.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cost of authenticating one request in a service's JwtAuthenticationFilter: from the gateway's identity assertion,
+// from a bearer token seen for the first time, and from one already in the verified-token cache. gatewaySign is
+// what the gateway adds per request to send the assertion. Add -prof gc for bytes/op. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main IdentityAssertionBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentityAssertionBenchmark {
+    
+    // More distinct tokens than the uncached filter's JwtService holds, so every one is parsed as if first seen
+    private static final int FIRST_SIGHT_TOKENS = 20_000;
+    
+    private JwtAuthenticationFilter cachedFilter;
+    
+    private JwtAuthenticationFilter uncachedFilter;
+    
+    private IdentityAssertion identityAssertion;
+    
+    private String token;
+    
+    private String[] tokens;
+    
+    private int next;
+    
+    private String assertion;
+    
+    private Date expiresAt;
+    
+    @Setup
+    public void setUp() {
+        JwtService cached = JwtServiceTest.jwtService(System::currentTimeMillis, null);
+        JwtService uncached = JwtServiceTest.jwtService(System::currentTimeMillis, null);
+        ReflectionTestUtils.setField(uncached, "cacheMaxSize", 1L);
+        uncached.init();
+        
+        identityAssertion = new IdentityAssertion();
+        ReflectionTestUtils.setField(identityAssertion, "secret", "benchmark-identity-secret");
+        ReflectionTestUtils.setField(identityAssertion, "ttlSeconds", 3600L);
+        identityAssertion.init();
+        
+        cachedFilter = filter(cached);
+        uncachedFilter = filter(uncached);
+        
+        token = cached.generateToken("1001001", List.of("EMPLOYEE"), 3_600_000);
+        tokens = new String[FIRST_SIGHT_TOKENS];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = uncached.generateToken(String.valueOf(1_000_000 + i), List.of("EMPLOYEE"), 3_600_000);
+        }
+        expiresAt = new Date(System.currentTimeMillis() + 3_600_000);
+        assertion = identityAssertion.sign("1001001", List.of("EMPLOYEE"), expiresAt);
+    }
+    
+    @Benchmark
+    public Authentication assertion() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/loans/count");
+        request.addHeader(IdentityAssertion.HEADER, assertion);
+        return filter(cachedFilter, request);
+    }
+    
+    @Benchmark
+    public Authentication firstSightToken() throws Exception {
+        String bearer = tokens[next];
+        next = next + 1 == tokens.length ? 0 : next + 1;
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/loans/count");
+        request.addHeader("Authorization", "Bearer " + bearer);
+        return filter(uncachedFilter, request);
+    }
+    
+    @Benchmark
+    public Authentication cachedToken() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/loans/count");
+        request.addHeader("Authorization", "Bearer " + token);
+        return filter(cachedFilter, request);
+    }
+    
+    @Benchmark
+    public String gatewaySign() {
+        return identityAssertion.sign("1001001", List.of("EMPLOYEE"), expiresAt);
+    }
+    
+    private JwtAuthenticationFilter filter(JwtService jwtService) {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtService", jwtService);
+        ReflectionTestUtils.setField(filter, "identityAssertion", identityAssertion);
+        return filter;
+    }
+    
+    private static Authentication filter(JwtAuthenticationFilter filter, MockHttpServletRequest request) throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,100 @@
+package com.bank.security;
+
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JwtAuthenticationFilterTest {
+    
+    private final JwtService jwtService = JwtServiceTest.jwtService(System::currentTimeMillis, null);
+    
+    private final IdentityAssertion identityAssertion = identityAssertion();
+    
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+    
+    @Test
+    void assertionAuthenticatesWithoutAToken() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(IdentityAssertion.HEADER, identityAssertion.sign("alice", List.of("EMPLOYEE"),
+                new Date(System.currentTimeMillis() + 60_000)));
+        
+        Authentication authentication = filter(new JwtAuthenticationFilter(), request);
+        
+        assertEquals("alice", authentication.getPrincipal());
+        assertEquals(List.of("EMPLOYEE"), RoleAuthorities.names(authentication.getAuthorities()));
+    }
+    
+    @Test
+    void bearerTokenAuthenticatesAndInvalidTokenDoesNot() throws Exception {
+        MockHttpServletRequest valid = new MockHttpServletRequest();
+        valid.addHeader("Authorization", "Bearer " + jwtService.generateToken("bob", List.of("MANAGER"), 60_000));
+        Authentication authentication = filter(new JwtAuthenticationFilter(), valid);
+        assertEquals("bob", authentication.getPrincipal());
+        assertEquals(List.of("MANAGER"), RoleAuthorities.names(authentication.getAuthorities()));
+        
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest invalid = new MockHttpServletRequest();
+        invalid.addHeader("Authorization", "Bearer not-a-jwt");
+        assertNull(filter(new JwtAuthenticationFilter(), invalid));
+    }
+    
+    @Test
+    void subclassCanRefuseAssertionsAndSignOne() throws Exception {
+        JwtAuthenticationFilter gateway = new JwtAuthenticationFilter() {
+            @Override
+            protected boolean acceptsAssertions() {
+                return false;
+            }
+            
+            @Override
+            protected void onTokenVerified(HttpServletRequest request, Claims claims, List<String> roles) {
+                request.setAttribute(IdentityAssertion.HEADER,
+                        getIdentityAssertion().sign(claims.getSubject(), roles, claims.getExpiration()));
+            }
+        };
+        MockHttpServletRequest forged = new MockHttpServletRequest();
+        forged.addHeader(IdentityAssertion.HEADER, identityAssertion.sign("mallory", List.of("MANAGER"),
+                new Date(System.currentTimeMillis() + 60_000)));
+        assertNull(filter(gateway, forged));
+        
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwtService.generateToken("carol", List.of("CUSTOMER"), 60_000));
+        assertEquals("carol", filter(gateway, request).getPrincipal());
+        IdentityAssertion.Identity identity = identityAssertion.verify((String) request.getAttribute(IdentityAssertion.HEADER));
+        assertNotNull(identity);
+        assertEquals("carol", identity.getPrincipal());
+        assertEquals(List.of("CUSTOMER"), identity.getRoles());
+    }
+    
+    private Authentication filter(JwtAuthenticationFilter filter, MockHttpServletRequest request) throws Exception {
+        ReflectionTestUtils.setField(filter, "jwtService", jwtService);
+        ReflectionTestUtils.setField(filter, "identityAssertion", identityAssertion);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+    
+    private static IdentityAssertion identityAssertion() {
+        IdentityAssertion identityAssertion = new IdentityAssertion();
+        ReflectionTestUtils.setField(identityAssertion, "secret", "test-identity-secret");
+        ReflectionTestUtils.setField(identityAssertion, "ttlSeconds", 30L);
+        identityAssertion.init();
+        return identityAssertion;
+    }
+}
@@ -0,0 +1,126 @@
+package com.bank.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JwtServiceTest {
+    
+    static final String SECRET = "test-secret-key-of-at-least-thirty-two-bytes";
+    
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    private JwtService jwtService;
+    
+    @BeforeEach
+    void setUp() {
+        jwtService = jwtService(now::get, meterRegistry);
+    }
+    
+    @Test
+    void validTokenIsParsedOnceThenServedFromTheCache() {
+        String token = jwtService.generateToken("alice", List.of("MANAGER"), 60_000);
+        
+        Claims first = jwtService.extractValidClaims(token);
+        Claims second = jwtService.extractValidClaims(token);
+        
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals("alice", first.getSubject());
+        assertEquals(List.of("MANAGER"), JwtService.roles(first));
+        assertEquals(1, gets("miss"));
+        assertEquals(1, gets("hit"));
+    }
+    
+    @Test
+    void cachedTokenIsRejectedOnceItExpires() {
+        String token = jwtService.generateToken("alice", List.of(), 60_000);
+        assertNotNull(jwtService.extractValidClaims(token));
+        assertEquals(1, cacheSize());
+        
+        now.addAndGet(59_000);
+        assertNotNull(jwtService.extractValidClaims(token));
+        
+        now.addAndGet(2_000);
+        assertNull(jwtService.extractValidClaims(token));
+        // The entry expired with the token, so it was looked up and parsed again rather than served
+        assertEquals(2, gets("miss"));
+    }
+    
+    @Test
+    void tamperedMalformedAndForeignTokensAreRejectedAndNotCached() {
+        String token = jwtService.generateToken("alice", List.of("CUSTOMER"), 60_000);
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA";
+        String otherKey = Jwts.builder()
+                .setSubject("alice")
+                .setExpiration(new Date(now.get() + 60_000))
+                .signWith(Keys.hmacShaKeyFor("another-secret-key-of-at-least-thirty-two".getBytes(StandardCharsets.UTF_8)),
+                        SignatureAlgorithm.HS256)
+                .compact();
+        
+        assertNull(jwtService.extractValidClaims(tampered));
+        assertNull(jwtService.extractValidClaims(otherKey));
+        assertNull(jwtService.extractValidClaims("not-a-jwt"));
+        assertNull(jwtService.extractValidClaims(""));
+        assertEquals(0, cacheSize());
+    }
+    
+    @Test
+    void tokenWithoutExpiryIsRejected() {
+        String token = Jwts.builder()
+                .setSubject("alice")
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .compact();
+        
+        assertNull(jwtService.extractValidClaims(token));
+        assertEquals(0, cacheSize());
+    }
+    
+    @Test
+    void tokenExpiredBeforeFirstUseIsRejected() {
+        String token = jwtService.generateToken("alice", List.of(), 1_000);
+        now.addAndGet(2_000);
+        
+        assertNull(jwtService.extractValidClaims(token));
+        assertEquals(0, cacheSize());
+    }
+    
+    private long gets(String result) {
+        return (long) meterRegistry.get("cache.gets").tag("cache", "verifiedTokens").tag("result", result)
+                .functionCounter().count();
+    }
+    
+    private long cacheSize() {
+        return (long) meterRegistry.get("cache.size").tag("cache", "verifiedTokens").gauge().value();
+    }
+    
+    static JwtService jwtService(LongSupplier clock, MeterRegistry meterRegistry) {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 86_400_000L);
+        ReflectionTestUtils.setField(jwtService, "cacheMaxSize", 10_000L);
+        ReflectionTestUtils.setField(jwtService, "meterRegistry", meterRegistry);
+        jwtService.setClock(clock);
+        jwtService.init();
+        return jwtService;
+    }
+}
@@ -0,0 +1,87 @@
+package com.bank.security;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Verifications per second for the three ways a request is authenticated: a bearer token already in the
+// verified-token cache, one parsed and signature-checked from scratch, and a gateway identity assertion.
+// Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main JwtVerificationBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtVerificationBenchmark {
+    
+    // Far more distinct tokens than the uncached service holds, so each one has been evicted before it comes round again
+    private static final int UNCACHED_TOKENS = 50_000;
+    
+    @State(Scope.Benchmark)
+    public static class Shared {
+        JwtService cached;
+        JwtService uncached;
+        IdentityAssertion identityAssertion;
+        String token;
+        String[] tokens;
+        String assertion;
+        
+        @Setup
+        public void setUp() {
+            cached = JwtServiceTest.jwtService(System::currentTimeMillis, null);
+            uncached = JwtServiceTest.jwtService(System::currentTimeMillis, null);
+            ReflectionTestUtils.setField(uncached, "cacheMaxSize", 1L);
+            uncached.init();
+            
+            token = cached.generateToken("1001001", List.of("CUSTOMER"), 3_600_000);
+            tokens = new String[UNCACHED_TOKENS];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = uncached.generateToken(String.valueOf(1_000_000 + i), List.of("CUSTOMER"), 3_600_000);
+            }
+            
+            identityAssertion = new IdentityAssertion();
+            ReflectionTestUtils.setField(identityAssertion, "secret", "benchmark-identity-secret");
+            ReflectionTestUtils.setField(identityAssertion, "ttlSeconds", 3600L);
+            identityAssertion.init();
+            assertion = identityAssertion.sign("1001001", List.of("CUSTOMER"), new Date(System.currentTimeMillis() + 3_600_000));
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+    
+    @Benchmark
+    public Claims cachedToken(Shared shared) {
+        return shared.cached.extractValidClaims(shared.token);
+    }
+    
+    @Benchmark
+    public Claims uncachedToken(Shared shared, Cursor cursor) {
+        String token = shared.tokens[cursor.next];
+        cursor.next = cursor.next + 1 == shared.tokens.length ? 0 : cursor.next + 1;
+        return shared.uncached.extractValidClaims(token);
+    }
+    
+    @Benchmark
+    public IdentityAssertion.Identity identityAssertion(Shared shared) {
+        return shared.identityAssertion.verify(shared.assertion);
+    }
+}
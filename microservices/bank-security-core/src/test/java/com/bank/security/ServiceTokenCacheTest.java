@@ -0,0 +1,114 @@
+package com.bank.security;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceTokenCacheTest {
+    
+    private static final long NEVER = Long.MAX_VALUE;
+    
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    
+    private JwtService jwtService;
+    
+    private ServiceTokenCache serviceTokens;
+    
+    @BeforeEach
+    void setUp() {
+        jwtService = JwtServiceTest.jwtService(now::get, null);
+        serviceTokens = new ServiceTokenCache();
+        ReflectionTestUtils.setField(serviceTokens, "jwtService", jwtService);
+        ReflectionTestUtils.setField(serviceTokens, "serviceName", "transaction-service");
+        ReflectionTestUtils.setField(serviceTokens, "ttl", Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(serviceTokens, "refreshBefore", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(serviceTokens, "cacheMaxSize", 10_000L);
+        serviceTokens.setClock(now::get);
+        serviceTokens.init();
+    }
+    
+    @Test
+    void longLivedCallerReusesOneFullLengthTokenUntilRefreshBefore() {
+        String first = serviceTokens.authorization("alice", List.of("EMPLOYEE"), NEVER);
+        assertEquals(now.get() + Duration.ofMinutes(15).toMillis(), expiry(first));
+        
+        now.addAndGet(Duration.ofMinutes(13).toMillis());
+        assertEquals(first, serviceTokens.authorization("alice", List.of("EMPLOYEE"), NEVER));
+        
+        now.addAndGet(Duration.ofMinutes(1).toMillis() + 1);
+        assertNotEquals(first, serviceTokens.authorization("alice", List.of("EMPLOYEE"), NEVER));
+    }
+    
+    @Test
+    void tokenExpiresWithAShortLivedCaller() {
+        long assertionExpiry = now.get() + 30_000;
+        
+        String header = serviceTokens.authorization("alice", List.of("EMPLOYEE"), assertionExpiry);
+        
+        assertEquals(assertionExpiry, expiry(header));
+    }
+    
+    @Test
+    void cachedTokenIsNotHandedToACallerThatExpiresSooner() {
+        String longLived = serviceTokens.authorization("alice", List.of("EMPLOYEE"), NEVER);
+        
+        long jwtExpiry = now.get() + Duration.ofMinutes(5).toMillis();
+        String capped = serviceTokens.authorization("alice", List.of("EMPLOYEE"), jwtExpiry);
+        
+        assertNotEquals(longLived, capped);
+        assertTrue(expiry(capped) <= jwtExpiry);
+    }
+    
+    @Test
+    void cappedTokenIsReusedWhileHalfTheCallersTimeRemains() {
+        // Successive requests each bring a fresh 30 s assertion, as they do through the gateway
+        String first = serviceTokens.authorization("alice", List.of("EMPLOYEE"), now.get() + 30_000);
+        
+        now.addAndGet(10_000);
+        assertEquals(first, serviceTokens.authorization("alice", List.of("EMPLOYEE"), now.get() + 30_000));
+        
+        now.addAndGet(6_000);
+        String second = serviceTokens.authorization("alice", List.of("EMPLOYEE"), now.get() + 30_000);
+        assertNotEquals(first, second);
+        assertEquals(now.get() + 30_000, expiry(second));
+    }
+    
+    @Test
+    void authenticationCarriesTheCredentialExpiry() {
+        Date assertionExpiry = new Date(now.get() + 20_000);
+        ExpiringAuthenticationToken caller = new ExpiringAuthenticationToken("alice", List.of("MANAGER"), assertionExpiry);
+        
+        String header = serviceTokens.authorization(caller);
+        
+        Claims claims = jwtService.extractValidClaims(header.substring("Bearer ".length()));
+        assertEquals("alice", claims.getSubject());
+        assertEquals(List.of("MANAGER"), JwtService.roles(claims));
+        assertEquals(assertionExpiry, claims.getExpiration());
+    }
+    
+    @Test
+    void serviceCredentialIsTheServiceItselfAndIsReused() {
+        String header = serviceTokens.serviceAuthorization();
+        
+        Claims claims = jwtService.extractValidClaims(header.substring("Bearer ".length()));
+        assertEquals("transaction-service", claims.getSubject());
+        assertEquals(List.of(ServiceTokenCache.SERVICE_ROLE), JwtService.roles(claims));
+        assertEquals(now.get() + Duration.ofMinutes(15).toMillis(), claims.getExpiration().getTime());
+        assertEquals(header, serviceTokens.serviceAuthorization());
+    }
+    
+    // JWT expiries have whole-second precision, and the test clock starts on a whole second
+    private long expiry(String header) {
+        return jwtService.extractValidClaims(header.substring("Bearer ".length())).getExpiration().getTime();
+    }
+}
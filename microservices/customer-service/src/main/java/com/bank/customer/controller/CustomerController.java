@@ -1,15 +1,20 @@
 package com.bank.customer.controller;
 
+import com.bank.customer.dto.CustomerChangeFeed;
 import com.bank.customer.dto.LoginRequest;
 import com.bank.customer.dto.LoginResponse;
 import com.bank.customer.model.Customer;
+import com.bank.customer.service.CustomerChangeLog;
 import com.bank.customer.service.CustomerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/customers")
@@ -18,6 +23,13 @@ public class CustomerController {
     @Autowired
     private CustomerService customerService;
     
+    @Autowired
+    private CustomerChangeLog changeLog;
+    
+    // Callers batch lookups up to services.customer.exists-batch.max-size, so larger lists are not ours
+    @Value("${customers.exists.max-ids:100}")
+    private int maxExistsIds;
+    
     @PostMapping("/register")
     public ResponseEntity<Customer> registerCustomer(@RequestBody Customer customer) {
         Customer createdCustomer = customerService.createCustomer(customer);
@@ -36,6 +48,23 @@ public class CustomerController {
         return ResponseEntity.ok(customers);
     }
     
+    @PostMapping("/exists")
+    public ResponseEntity<Map<String, Boolean>> customersExist(@RequestBody List<String> ssnIds) {
+        if (ssnIds.size() > maxExistsIds) {
+            return ResponseEntity.badRequest().build();
+        }
+        Map<String, Boolean> result = customerService.customersExist(ssnIds);
+        return ResponseEntity.ok(result);
+    }
+    
+    // Long-poll: with waitMs the request is held until a change newer than since is recorded
+    @GetMapping("/changes")
+    public DeferredResult<CustomerChangeFeed> getChanges(@RequestParam(defaultValue = "0") long since,
+                                                         @RequestParam(defaultValue = "100") int limit,
+                                                         @RequestParam(defaultValue = "0") long waitMs) {
+        return changeLog.poll(since, limit, waitMs);
+    }
+    
     @GetMapping("/{ssnId}")
     public ResponseEntity<Customer> getCustomerBySsn(@PathVariable String ssnId) {
         Customer customer = customerService.getCustomerBySsn(ssnId);
@@ -0,0 +1,31 @@
+package com.bank.customer.dto;
+
+import com.bank.customer.model.CustomerChangeType;
+
+import java.time.LocalDateTime;
+
+public class CustomerChange {
+    private long sequence;
+    private String ssnId;
+    private CustomerChangeType type;
+    private LocalDateTime occurredAt;
+    
+    public CustomerChange(long sequence, String ssnId, CustomerChangeType type, LocalDateTime occurredAt) {
+        this.sequence = sequence;
+        this.ssnId = ssnId;
+        this.type = type;
+        this.occurredAt = occurredAt;
+    }
+    
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+    
+    public String getSsnId() { return ssnId; }
+    public void setSsnId(String ssnId) { this.ssnId = ssnId; }
+    
+    public CustomerChangeType getType() { return type; }
+    public void setType(CustomerChangeType type) { this.type = type; }
+    
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+    public void setOccurredAt(LocalDateTime occurredAt) { this.occurredAt = occurredAt; }
+}
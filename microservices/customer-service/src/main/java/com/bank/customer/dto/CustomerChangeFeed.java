@@ -0,0 +1,29 @@
+package com.bank.customer.dto;
+
+import java.util.List;
+
+public class CustomerChangeFeed {
+    private String epoch;
+    private long latestSequence;
+    private boolean reset;
+    private List<CustomerChange> changes;
+    
+    public CustomerChangeFeed(String epoch, long latestSequence, boolean reset, List<CustomerChange> changes) {
+        this.epoch = epoch;
+        this.latestSequence = latestSequence;
+        this.reset = reset;
+        this.changes = changes;
+    }
+    
+    public String getEpoch() { return epoch; }
+    public void setEpoch(String epoch) { this.epoch = epoch; }
+    
+    public long getLatestSequence() { return latestSequence; }
+    public void setLatestSequence(long latestSequence) { this.latestSequence = latestSequence; }
+    
+    public boolean isReset() { return reset; }
+    public void setReset(boolean reset) { this.reset = reset; }
+    
+    public List<CustomerChange> getChanges() { return changes; }
+    public void setChanges(List<CustomerChange> changes) { this.changes = changes; }
+}
@@ -0,0 +1,9 @@
+package com.bank.customer.model;
+
+public enum CustomerChangeType {
+    CREATED,
+    UPDATED,
+    DELETED,
+    ACTIVATED,
+    DEACTIVATED
+}
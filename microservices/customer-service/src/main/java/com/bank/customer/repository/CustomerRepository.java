@@ -2,7 +2,11 @@ package com.bank.customer.repository;
 
 import com.bank.customer.model.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +17,7 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     boolean existsBySsnId(String ssnId);
     
     boolean existsByAccountNumber(String accountNumber);
+    
+    @Query("SELECT c.ssnId FROM Customer c WHERE c.ssnId IN :ssnIds")
+    List<String> findExistingSsnIds(@Param("ssnIds") Collection<String> ssnIds);
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+package com.bank.customer.service;
+
+import com.bank.customer.dto.CustomerChange;
+import com.bank.customer.dto.CustomerChangeFeed;
+import com.bank.customer.model.CustomerChangeType;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Service
+public class CustomerChangeLog {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CustomerChangeLog.class);
+    
+    // Sequence numbers restart with the service, so consumers compare the epoch to detect that
+    private final String epoch = UUID.randomUUID().toString();
+    
+    // Ring of the last retention changes; sequence numbers are contiguous, so a change's slot follows from its
+    // sequence and a read jumps straight to since + 1
+    private CustomerChange[] changes;
+    
+    private final Set<Waiter> waiters = new HashSet<>();
+    
+    private long latestSequence;
+    
+    @Value("${customers.changes.retention:10000}")
+    private int retention;
+    
+    // Each parked long-poll holds a request until the next change, so idle consumers are capped
+    @Value("${customers.changes.max-waiters:1000}")
+    private int maxWaiters;
+    
+    @Value("${customers.changes.max-limit:500}")
+    private int maxLimit;
+    
+    @Value("${customers.changes.max-wait-ms:30000}")
+    private long maxWaitMs;
+    
+    @PostConstruct
+    public void init() {
+        changes = new CustomerChange[Math.max(1, retention)];
+    }
+    
+    // Events are appended only after the mutation commits, so a consumer never sees a change that rolled back
+    public void record(String ssnId, CustomerChangeType type) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(ssnId, type);
+                }
+            });
+        } else {
+            append(ssnId, type);
+        }
+    }
+    
+    public CustomerChangeFeed read(long since, int limit) {
+        synchronized (changes) {
+            return readLocked(since, clampLimit(limit));
+        }
+    }
+    
+    // Answers at once when there is something newer than since, otherwise parks the request until an append or the wait expires
+    public DeferredResult<CustomerChangeFeed> poll(long since, int limit, long waitMs) {
+        int boundedLimit = clampLimit(limit);
+        long boundedWait = Math.max(0, Math.min(waitMs, maxWaitMs));
+        DeferredResult<CustomerChangeFeed> result = new DeferredResult<>(boundedWait > 0 ? boundedWait : null);
+        
+        synchronized (changes) {
+            CustomerChangeFeed feed = readLocked(since, boundedLimit);
+            if (boundedWait == 0 || feed.isReset() || !feed.getChanges().isEmpty()) {
+                result.setResult(feed);
+                return result;
+            }
+            
+            if (waiters.size() >= maxWaiters) {
+                logger.warn("Rejecting change-feed poll: {} polls already waiting", waiters.size());
+                result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Too many change-feed polls waiting"));
+                return result;
+            }
+            
+            Waiter waiter = new Waiter(since, boundedLimit, result);
+            waiters.add(waiter);
+            result.onTimeout(() -> result.setResult(read(since, boundedLimit)));
+            result.onCompletion(() -> {
+                synchronized (changes) {
+                    waiters.remove(waiter);
+                }
+            });
+        }
+        return result;
+    }
+    
+    private void append(String ssnId, CustomerChangeType type) {
+        List<Waiter> ready;
+        synchronized (changes) {
+            long sequence = ++latestSequence;
+            changes[slot(sequence)] = new CustomerChange(sequence, ssnId, type, LocalDateTime.now());
+            ready = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        logger.debug("Customer change {} recorded for {}", type, ssnId);
+        
+        for (Waiter waiter : ready) {
+            waiter.result.setResult(read(waiter.since, waiter.limit));
+        }
+    }
+    
+    private CustomerChangeFeed readLocked(long since, int limit) {
+        long oldestRetained = Math.max(1, latestSequence - changes.length + 1);
+        // The consumer either fell behind the retained window or is holding a cursor from an earlier epoch
+        if (since > latestSequence || since < oldestRetained - 1) {
+            return new CustomerChangeFeed(epoch, latestSequence, true, List.of());
+        }
+        
+        long last = Math.min(latestSequence, since + limit);
+        List<CustomerChange> page = new ArrayList<>((int) (last - since));
+        for (long sequence = since + 1; sequence <= last; sequence++) {
+            page.add(changes[slot(sequence)]);
+        }
+        return new CustomerChangeFeed(epoch, latestSequence, false, page);
+    }
+    
+    private int slot(long sequence) {
+        return (int) ((sequence - 1) % changes.length);
+    }
+    
+    private int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, maxLimit));
+    }
+    
+    private static class Waiter {
+        private final long since;
+        private final int limit;
+        private final DeferredResult<CustomerChangeFeed> result;
+        
+        Waiter(long since, int limit, DeferredResult<CustomerChangeFeed> result) {
+            this.since = since;
+            this.limit = limit;
+            this.result = result;
+        }
+    }
+}
@@ -2,13 +2,20 @@ package com.bank.customer.service;
 
 import com.bank.customer.dto.LoginResponse;
 import com.bank.customer.model.Customer;
+import com.bank.customer.model.CustomerChangeType;
 import com.bank.customer.repository.CustomerRepository;
+import com.bank.security.JwtService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 @Service
 public class CustomerService {
@@ -22,6 +29,10 @@ public class CustomerService {
     @Autowired
     private JwtService jwtService;
     
+    @Autowired
+    private CustomerChangeLog changeLog;
+    
+    @Transactional
     public Customer createCustomer(Customer customer) {
         if (customer.getSsnId() == null || customer.getSsnId().trim().isEmpty()) {
             customer.setSsnId(generateUniqueSsnId());
@@ -34,7 +45,9 @@ public class CustomerService {
         }
         
         customer.setPasswordHash(passwordEncoder.encode(customer.getPassword()));
-        return customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        changeLog.record(saved.getSsnId(), CustomerChangeType.CREATED);
+        return saved;
     }
     
     private String generateUniqueSsnId() {
@@ -67,7 +80,7 @@ public class CustomerService {
             throw new RuntimeException("Invalid credentials");
         }
         
-        String token = jwtService.generateToken(ssnId);
+        String token = jwtService.generateToken(ssnId, List.of(customer.getRole().name()));
         String fullName = customer.getFirstName() + " " + (customer.getLastName() != null ? customer.getLastName() : "");
         return new LoginResponse(token, "Login successful", 
             customer.getRole().toString(), ssnId, fullName.trim());
@@ -78,10 +91,20 @@ public class CustomerService {
                 .orElseThrow(() -> new RuntimeException("Customer not found with SSN: " + ssnId));
     }
     
+    public Map<String, Boolean> customersExist(List<String> ssnIds) {
+        Set<String> existing = ssnIds.isEmpty() ? Set.of() : new HashSet<>(customerRepository.findExistingSsnIds(ssnIds));
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (String ssnId : ssnIds) {
+            result.put(ssnId, existing.contains(ssnId));
+        }
+        return result;
+    }
+    
     public List<Customer> getAllCustomers() {
         return customerRepository.findAll();
     }
     
+    @Transactional
     public Customer updateCustomer(String ssnId, Customer customerDetails) {
         Customer customer = getCustomerBySsn(ssnId);
         
@@ -101,27 +124,37 @@ public class CustomerService {
             customer.setPasswordHash(passwordEncoder.encode(customerDetails.getPassword()));
         }
         
-        return customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        changeLog.record(ssnId, CustomerChangeType.UPDATED);
+        return saved;
     }
     
+    @Transactional
     public void deleteCustomer(String ssnId) {
         Customer customer = getCustomerBySsn(ssnId);
         customerRepository.delete(customer);
+        changeLog.record(ssnId, CustomerChangeType.DELETED);
     }
     
     public long getCustomerCount() {
         return customerRepository.count();
     }
     
+    @Transactional
     public Customer activateCustomer(String ssnId) {
         Customer customer = getCustomerBySsn(ssnId);
         customer.setActive(true);
-        return customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        changeLog.record(ssnId, CustomerChangeType.ACTIVATED);
+        return saved;
     }
     
+    @Transactional
     public Customer deactivateCustomer(String ssnId) {
         Customer customer = getCustomerBySsn(ssnId);
         customer.setActive(false);
-        return customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        changeLog.record(ssnId, CustomerChangeType.DEACTIVATED);
+        return saved;
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.bank.employee.config;
 
+import com.bank.security.JwtAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
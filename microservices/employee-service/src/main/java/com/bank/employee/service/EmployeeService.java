@@ -4,7 +4,7 @@ import com.bank.employee.dto.LoginResponse;
 import com.bank.employee.model.Employee;
 import com.bank.employee.model.Role;
 import com.bank.employee.repository.EmployeeRepository;
-import com.bank.employee.config.JwtService;
+import com.bank.security.JwtService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -45,7 +45,7 @@ public class EmployeeService {
             throw new RuntimeException("Invalid credentials");
         }
         
-        String token = jwtService.generateToken(employee.getEmployeeId());
+        String token = jwtService.generateToken(employee.getEmployeeId(), List.of(employee.getRole().name()));
         String fullName = employee.getFirstName() + " " + (employee.getLastName() != null ? employee.getLastName() : "");
         return new LoginResponse(token, "Login successful", 
             employee.getRole().toString(), employee.getEmployeeId(), fullName.trim());
@@ -1,14 +1,28 @@
 package com.bank.loan.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
     
+    @Value("${services.customer.connect-timeout:2s}")
+    private Duration connectTimeout;
+    
+    // Batched existence checks run on a small fixed pool, so a hung customer-service must not hold its threads
+    @Value("${services.customer.read-timeout:5s}")
+    private Duration readTimeout;
+    
     @Bean
     public RestTemplate restTemplate() {
-        return new RestTemplate();
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeout);
+        requestFactory.setReadTimeout(readTimeout);
+        return new RestTemplate(requestFactory);
     }
-}
\ No newline at end of file
+}
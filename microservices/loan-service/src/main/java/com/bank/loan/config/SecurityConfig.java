@@ -1,9 +1,11 @@
 package com.bank.loan.config;
 
+import com.bank.security.JwtAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -18,6 +20,8 @@ import java.util.Arrays;
 
 @Configuration
 @EnableWebSecurity
+// Enforces the @PreAuthorize role checks on LoanController from the authorities the JWT filter builds from the token
+@EnableMethodSecurity
 public class SecurityConfig {
     
     @Autowired
@@ -41,7 +45,7 @@ public class SecurityConfig {
                 .anyRequest().permitAll() // Temporarily allow all requests for testing
             )
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
-            
+        
         return http.build();
     }
     
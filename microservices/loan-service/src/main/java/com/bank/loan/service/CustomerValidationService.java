@@ -1,50 +1,139 @@
 package com.bank.loan.service;
 
 import com.bank.loan.dto.CustomerDto;
+import com.bank.security.ServiceTokenCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @Service
 public class CustomerValidationService {
     
     private static final Logger logger = LoggerFactory.getLogger(CustomerValidationService.class);
     
+    private static final ParameterizedTypeReference<Map<String, Boolean>> EXISTS_RESPONSE =
+            new ParameterizedTypeReference<>() {};
+    
     @Autowired
     private RestTemplate restTemplate;
     
     @Autowired
-    private JwtService jwtService;
+    private ServiceTokenCache serviceTokens;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
     
     @Value("${services.customer.url}")
     private String customerServiceUrl;
     
+    @Value("${services.customer.exists-batch.window-ms:5}")
+    private long batchWindowMs;
+    
+    @Value("${services.customer.exists-batch.max-size:100}")
+    private int maxBatchSize;
+    
+    @Value("${services.customer.exists-batch.timeout-ms:5000}")
+    private long lookupTimeoutMs;
+    
+    @Value("${services.customer.exists-cache.max-size:10000}")
+    private long cacheMaxSize;
+    
+    @Value("${services.customer.exists-cache.positive-ttl:30m}")
+    private Duration positiveTtl;
+    
+    @Value("${services.customer.exists-cache.negative-ttl:30s}")
+    private Duration negativeTtl;
+    
+    private Cache<String, Boolean> existenceCache;
+    
+    // One shared future per SSN while a lookup for it is queued or on the wire
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    
+    private final Object batchLock = new Object();
+    
+    // Keyed by SSN; the futures are the ones registered in inFlight when the lookup was queued
+    private Map<String, CompletableFuture<Boolean>> pendingLookups = new LinkedHashMap<>();
+    
+    private ScheduledFuture<?> pendingFlush;
+    
+    private final ScheduledExecutorService batchExecutor = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "customer-exists-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    public void initCache() {
+        existenceCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(String ssnId, Boolean exists, long currentTime) {
+                        return (exists ? positiveTtl : negativeTtl).toNanos();
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String ssnId, Boolean exists, long currentTime, long currentDuration) {
+                        return (exists ? positiveTtl : negativeTtl).toNanos();
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String ssnId, Boolean exists, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        // Publishes cache.gets{result=hit|miss}, cache.evictions and cache.size under cache=customerExistence
+        CaffeineCacheMetrics.monitor(meterRegistry, existenceCache, "customerExistence");
+    }
+    
     public boolean customerExists(String ssnId) {
+        Boolean cached = existenceCache.getIfPresent(ssnId);
+        if (cached != null) {
+            return cached;
+        }
+        
+        CompletableFuture<Boolean> lookup = lookup(ssnId);
         try {
-            String url = customerServiceUrl + "/customers/" + ssnId;
-            logger.info("Validating customer existence: {}", ssnId);
-            
-            HttpHeaders headers = createAuthHeaders();
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<CustomerDto> response = restTemplate.exchange(
-                url, HttpMethod.GET, entity, CustomerDto.class);
-                
-            CustomerDto customer = response.getBody();
-            boolean exists = customer != null && customer.getSsnId() != null;
-            
-            logger.info("Customer validation result for {}: {}", ssnId, exists);
+            boolean exists = lookup.get(lookupTimeoutMs, TimeUnit.MILLISECONDS);
+            logger.debug("Customer validation result for {}: {}", ssnId, exists);
             return exists;
-            
+        } catch (TimeoutException e) {
+            abandon(ssnId, lookup);
+            logger.warn("Customer validation timed out for {}", ssnId);
+            return false;
         } catch (Exception e) {
             logger.warn("Customer validation failed for {}: {}", ssnId, e.getMessage());
             return false;
@@ -61,7 +150,7 @@ public class CustomerValidationService {
             
             ResponseEntity<CustomerDto> response = restTemplate.exchange(
                 url, HttpMethod.GET, entity, CustomerDto.class);
-                
+            
             return response.getBody();
             
         } catch (Exception e) {
@@ -70,15 +159,104 @@ public class CustomerValidationService {
         }
     }
     
+    // Misses go through the in-flight map, so concurrent misses for one SSN cause a single remote lookup
+    private CompletableFuture<Boolean> lookup(String ssnId) {
+        CompletableFuture<Boolean> lookup = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(ssnId, lookup);
+        if (existing != null) {
+            return existing;
+        }
+        enqueue(ssnId, lookup);
+        return lookup;
+    }
+    
+    // Fails a lookup its caller gave up on and drops it from the in-flight map, so later misses for the SSN start a
+    // fresh lookup instead of joining one whose batch may never be answered
+    private void abandon(String ssnId, CompletableFuture<Boolean> lookup) {
+        lookup.completeExceptionally(new TimeoutException("Customer lookup timed out"));
+        inFlight.remove(ssnId, lookup);
+    }
+    
+    // Lookups are held for a short window, or until the batch is full, then sent as one POST /customers/exists
+    private void enqueue(String ssnId, CompletableFuture<Boolean> lookup) {
+        Map<String, CompletableFuture<Boolean>> fullBatch = null;
+        
+        synchronized (batchLock) {
+            if (pendingLookups.isEmpty()) {
+                pendingFlush = batchExecutor.schedule(this::flushPending, batchWindowMs, TimeUnit.MILLISECONDS);
+            }
+            pendingLookups.put(ssnId, lookup);
+            
+            if (pendingLookups.size() >= maxBatchSize) {
+                pendingFlush.cancel(false);
+                fullBatch = pendingLookups;
+                pendingLookups = new LinkedHashMap<>();
+            }
+        }
+        
+        if (fullBatch != null) {
+            Map<String, CompletableFuture<Boolean>> batch = fullBatch;
+            batchExecutor.execute(() -> sendBatch(batch));
+        }
+    }
+    
+    private void flushPending() {
+        Map<String, CompletableFuture<Boolean>> batch;
+        synchronized (batchLock) {
+            if (pendingLookups.isEmpty()) {
+                return;
+            }
+            batch = pendingLookups;
+            pendingLookups = new LinkedHashMap<>();
+        }
+        sendBatch(batch);
+    }
+    
+    // Lookups from many callers share one request, so it is sent with the service's own credential rather than any
+    // one caller's; existence is not principal-specific
+    private void sendBatch(Map<String, CompletableFuture<Boolean>> lookups) {
+        List<String> ssnIds = new ArrayList<>(lookups.keySet());
+        Map<String, Boolean> result = Map.of();
+        try {
+            String url = customerServiceUrl + "/customers/exists";
+            logger.info("Validating existence of {} customers in one call", ssnIds.size());
+            
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("Authorization", serviceTokens.serviceAuthorization());
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            ResponseEntity<Map<String, Boolean>> response = restTemplate.exchange(
+                url, HttpMethod.POST, new HttpEntity<>(ssnIds, headers), EXISTS_RESPONSE);
+            
+            if (response.getBody() != null) {
+                result = response.getBody();
+                // Only answers from customer-service are cached; transport failures are retried next time
+                result.forEach(existenceCache::put);
+            }
+        } catch (Exception e) {
+            logger.warn("Batched customer validation failed for {} customers: {}", ssnIds.size(), e.getMessage());
+        } finally {
+            Map<String, Boolean> answers = result;
+            lookups.forEach((ssnId, lookup) -> {
+                // A lookup abandoned after a timeout may already have been replaced by a newer one for the SSN
+                inFlight.remove(ssnId, lookup);
+                lookup.complete(Boolean.TRUE.equals(answers.get(ssnId)));
+            });
+        }
+    }
+    
     private HttpHeaders createAuthHeaders() {
         HttpHeaders headers = new HttpHeaders();
         
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.getName() != null) {
-            String serviceToken = jwtService.generateToken(auth.getName());
-            headers.set("Authorization", "Bearer " + serviceToken);
+            headers.set("Authorization", serviceTokens.authorization(auth));
         }
         
         return headers;
     }
-}
\ No newline at end of file
+    
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+}
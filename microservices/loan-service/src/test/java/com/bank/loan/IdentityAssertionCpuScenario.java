@@ -0,0 +1,133 @@
+package com.bank.loan;
+
+import com.bank.security.IdentityAssertion;
+import com.bank.security.JwtService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Server CPU per request for GET /loans/count authenticated three ways: a bearer token the service has not seen
+// before, one it has already verified and cached, and the gateway's identity assertion. Rounds of each mode are
+// interleaved in one JVM at a fixed request rate, so JIT state and machine noise fall on all modes alike. CPU is
+// the time spent on Tomcat's request threads, read from ThreadMXBean. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> com.bank.loan.IdentityAssertionCpuScenario
+//        [requests/s] [seconds per round] [rounds]
+public class IdentityAssertionCpuScenario {
+    
+    private enum Mode { NEW_TOKEN, CACHED_TOKEN, ASSERTION }
+    
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 150;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        
+        ConfigurableApplicationContext service = SpringApplication.run(LoanServiceApplication.class,
+                "--server.port=0",
+                "--logging.level.root=ERROR",
+                "--logging.level.com.bank=ERROR",
+                "--logging.level.com.bank.loan=ERROR");
+        try {
+            String url = "http://localhost:" + service.getEnvironment().getProperty("local.server.port") + "/loans/count";
+            JwtService jwtService = service.getBean(JwtService.class);
+            IdentityAssertion identityAssertion = service.getBean(IdentityAssertion.class);
+            List<String> roles = List.of("EMPLOYEE");
+            String cachedToken = jwtService.generateToken("1001001", roles, 3_600_000);
+            AtomicInteger principals = new AtomicInteger(2_000_000);
+            
+            Map<Mode, Supplier<HttpRequest>> requests = new EnumMap<>(Mode.class);
+            requests.put(Mode.NEW_TOKEN, () -> HttpRequest.newBuilder(URI.create(url))
+                    .header("Authorization", "Bearer " + jwtService.generateToken(
+                            String.valueOf(principals.incrementAndGet()), roles, 3_600_000))
+                    .build());
+            requests.put(Mode.CACHED_TOKEN, () -> HttpRequest.newBuilder(URI.create(url))
+                    .header("Authorization", "Bearer " + cachedToken)
+                    .build());
+            requests.put(Mode.ASSERTION, () -> HttpRequest.newBuilder(URI.create(url))
+                    .header(IdentityAssertion.HEADER, identityAssertion.sign("1001001", roles,
+                            new Date(System.currentTimeMillis() + 3_600_000)))
+                    .build());
+            
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            // Warm every path before measuring
+            for (Mode mode : Mode.values()) {
+                run(client, requests.get(mode), rate, 5);
+            }
+            Map<Mode, List<Double>> cpuPerRequest = new EnumMap<>(Mode.class);
+            for (int round = 0; round < rounds; round++) {
+                for (Mode mode : Mode.values()) {
+                    double micros = run(client, requests.get(mode), rate, seconds);
+                    cpuPerRequest.computeIfAbsent(mode, ignored -> new ArrayList<>()).add(micros);
+                    System.out.printf("round %d  %-12s %7.1f us CPU/req%n", round + 1, mode, micros);
+                }
+            }
+            for (Mode mode : Mode.values()) {
+                List<Double> sorted = new ArrayList<>(cpuPerRequest.get(mode));
+                Collections.sort(sorted);
+                System.out.printf("%-12s median %7.1f us CPU/req (range %.1f-%.1f)%n", mode,
+                        sorted.get(sorted.size() / 2), sorted.get(0), sorted.get(sorted.size() - 1));
+            }
+        } finally {
+            service.close();
+        }
+    }
+    
+    // Sends requests at a fixed rate for the given time and returns request-thread CPU microseconds per request
+    private static double run(HttpClient client, Supplier<HttpRequest> request, int rate, int seconds) throws Exception {
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        List<CompletableFuture<HttpResponse<Void>>> responses = Collections.synchronizedList(new ArrayList<>());
+        Map<Long, Long> before = requestThreadCpu();
+        ticker.scheduleAtFixedRate(() -> responses.add(client.sendAsync(request.get(), HttpResponse.BodyHandlers.discarding())),
+                0, TimeUnit.SECONDS.toNanos(1) / rate, TimeUnit.NANOSECONDS);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        ticker.shutdown();
+        ticker.awaitTermination(5, TimeUnit.SECONDS);
+        
+        List<CompletableFuture<HttpResponse<Void>>> sent;
+        synchronized (responses) {
+            sent = new ArrayList<>(responses);
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : sent) {
+            if (response.get().statusCode() != 200) {
+                throw new RuntimeException("GET /loans/count answered " + response.get().statusCode());
+            }
+        }
+        
+        long cpu = 0;
+        for (Map.Entry<Long, Long> thread : requestThreadCpu().entrySet()) {
+            cpu += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return TimeUnit.NANOSECONDS.toMicros(cpu) / (double) sent.size();
+    }
+    
+    // CPU nanoseconds so far of each live Tomcat request thread, by thread id
+    private static Map<Long, Long> requestThreadCpu() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<Long, Long> cpu = new HashMap<>();
+        for (ThreadInfo thread : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (thread != null && thread.getThreadName().startsWith("http-nio-") && thread.getThreadName().contains("-exec-")) {
+                cpu.put(thread.getThreadId(), threads.getThreadCpuTime(thread.getThreadId()));
+            }
+        }
+        return cpu;
+    }
+}
@@ -3,6 +3,7 @@ package com.bank.transaction.config;
 import com.bank.transaction.model.Transaction;
 import com.bank.transaction.model.TransactionType;
 import com.bank.transaction.repository.TransactionRepository;
+import com.bank.transaction.service.BalanceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,11 +24,15 @@ public class DataSeeder implements CommandLineRunner {
     @Autowired
     private TransactionRepository transactionRepository;
     
+    @Autowired
+    private BalanceService balanceService;
+    
     @Override
     public void run(String... args) throws Exception {
         if (transactionRepository.count() == 0) {
             seedTransactions();
         }
+        balanceService.rebuild();
     }
     
     private void seedTransactions() {
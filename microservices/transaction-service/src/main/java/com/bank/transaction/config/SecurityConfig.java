@@ -1,9 +1,11 @@
 package com.bank.transaction.config;
 
+import com.bank.security.JwtAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -18,6 +20,8 @@ import java.util.Arrays;
 
 @Configuration
 @EnableWebSecurity
+// Enforces the @PreAuthorize role checks on TransactionController from the authorities the JWT filter builds
+@EnableMethodSecurity
 public class SecurityConfig {
     
     @Autowired
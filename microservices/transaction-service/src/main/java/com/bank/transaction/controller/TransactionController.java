@@ -1,14 +1,26 @@
 package com.bank.transaction.controller;
 
+import com.bank.transaction.dto.BulkIngestResponse;
+import com.bank.transaction.dto.TransactionPage;
 import com.bank.transaction.model.Transaction;
+import com.bank.transaction.service.BulkIngestionService;
 import com.bank.transaction.service.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
@@ -19,9 +31,17 @@ public class TransactionController {
     
     private static final Logger logger = LoggerFactory.getLogger(TransactionController.class);
     
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    
     @Autowired
     private TransactionService transactionService;
     
+    @Autowired
+    private BulkIngestionService bulkIngestionService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     @PostMapping("/customer/{customerSsnId}")
     public ResponseEntity<Transaction> createTransaction(
             @PathVariable String customerSsnId, 
@@ -36,6 +56,21 @@ public class TransactionController {
         }
     }
     
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkIngestResponse> bulkIngest(HttpServletRequest request) {
+        try {
+            logger.info("Starting bulk transaction ingestion");
+            BulkIngestResponse response = bulkIngestionService.ingest(request.getInputStream());
+            if (response.getError() != null) {
+                return ResponseEntity.badRequest().body(response);
+            }
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error during bulk transaction ingestion: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     @GetMapping
     public ResponseEntity<List<Transaction>> getAllTransactions() {
         try {
@@ -48,6 +83,25 @@ public class TransactionController {
         }
     }
     
+    @GetMapping(params = "limit")
+    public ResponseEntity<TransactionPage> getTransactionsPage(
+            @RequestParam int limit,
+            @RequestParam(required = false) String next) {
+        try {
+            return ResponseEntity.ok(transactionService.getTransactionsPage(limit, next));
+        } catch (Exception e) {
+            logger.error("Error fetching transactions page: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllTransactions() {
+        logger.info("Streaming all transactions");
+        StreamingResponseBody body = out -> transactionService.streamAllTransactions(t -> writeLine(out, t));
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+    
     @GetMapping("/{transactionId}")
     public ResponseEntity<Transaction> getTransactionById(@PathVariable String transactionId) {
         try {
@@ -72,6 +126,55 @@ public class TransactionController {
         }
     }
     
+    @GetMapping(value = "/customer/{customerSsnId}", params = "limit")
+    public ResponseEntity<TransactionPage> getTransactionsPageByCustomer(
+            @PathVariable String customerSsnId,
+            @RequestParam int limit,
+            @RequestParam(required = false) String next) {
+        try {
+            return ResponseEntity.ok(transactionService.getTransactionsPageByCustomer(customerSsnId, limit, next));
+        } catch (Exception e) {
+            logger.error("Error fetching transactions page for customer {}: {}", customerSsnId, e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    @GetMapping("/customer/{customerSsnId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamTransactionsByCustomer(@PathVariable String customerSsnId) {
+        try {
+            logger.info("Streaming transactions for customer: {}", customerSsnId);
+            transactionService.validateCustomer(customerSsnId);
+            StreamingResponseBody body = out ->
+                    transactionService.streamTransactionsByCustomer(customerSsnId, t -> writeLine(out, t));
+            return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+        } catch (Exception e) {
+            logger.error("Error streaming transactions for customer {}: {}", customerSsnId, e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    @GetMapping("/customer/{customerSsnId}/balance")
+    public ResponseEntity<Map<String, Object>> getCustomerBalance(@PathVariable String customerSsnId) {
+        try {
+            BigDecimal balance = transactionService.getCustomerBalance(customerSsnId);
+            return ResponseEntity.ok(Map.of("customerSsnId", customerSsnId, "balance", balance));
+        } catch (Exception e) {
+            logger.error("Error fetching balance for customer {}: {}", customerSsnId, e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @GetMapping("/account/{accountId}/balance")
+    public ResponseEntity<Map<String, Object>> getAccountBalance(@PathVariable String accountId) {
+        try {
+            BigDecimal balance = transactionService.getAccountBalance(accountId);
+            return ResponseEntity.ok(Map.of("accountId", accountId, "balance", balance));
+        } catch (Exception e) {
+            logger.error("Error fetching balance for account {}: {}", accountId, e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     @PutMapping("/{transactionId}")
     public ResponseEntity<Transaction> updateTransaction(
             @PathVariable String transactionId,
@@ -121,4 +224,25 @@ public class TransactionController {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+    
+    @PostMapping("/total-balance/rebuild")
+    @PreAuthorize("hasAuthority('EMPLOYEE') or hasAuthority('MANAGER')")
+    public ResponseEntity<Map<String, BigDecimal>> rebuildTotalBankBalance() {
+        try {
+            logger.info("Rebuilding total bank balance");
+            return ResponseEntity.ok(transactionService.rebuildTotalBankBalance());
+        } catch (Exception e) {
+            logger.error("Error rebuilding total bank balance: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    private void writeLine(OutputStream out, Transaction transaction) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(transaction));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.bank.transaction.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkIngestResponse {
+    private long received;
+    private long inserted;
+    // Every failed row, including those past the cap on the failures list
+    private long failed;
+    private long elapsedMillis;
+    private List<RowFailure> failures = new ArrayList<>();
+    // Set once failed rows exceed maxFailures; later failures are only counted
+    private boolean failuresTruncated;
+    private int maxFailures = Integer.MAX_VALUE;
+    // Set when the body is not a well-formed array of objects; the upload is rejected at that element
+    private String error;
+    
+    public BulkIngestResponse() {}
+    
+    public BulkIngestResponse(int maxFailures) {
+        this.maxFailures = maxFailures;
+    }
+    
+    public void addFailure(long index, String transactionId, String reason) {
+        if (failures.size() < maxFailures) {
+            failures.add(new RowFailure(index, transactionId, reason));
+        } else {
+            failuresTruncated = true;
+        }
+        failed++;
+    }
+    
+    public long getReceived() {
+        return received;
+    }
+    
+    public void setReceived(long received) {
+        this.received = received;
+    }
+    
+    public long getInserted() {
+        return inserted;
+    }
+    
+    public void setInserted(long inserted) {
+        this.inserted = inserted;
+    }
+    
+    public long getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+    
+    public double getRowsPerSecond() {
+        return elapsedMillis > 0 ? inserted * 1000.0 / elapsedMillis : inserted;
+    }
+    
+    public List<RowFailure> getFailures() {
+        return failures;
+    }
+    
+    public void setFailures(List<RowFailure> failures) {
+        this.failures = failures;
+    }
+    
+    public boolean isFailuresTruncated() {
+        return failuresTruncated;
+    }
+    
+    public void setFailuresTruncated(boolean failuresTruncated) {
+        this.failuresTruncated = failuresTruncated;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    public static class RowFailure {
+        private long index;
+        private String transactionId;
+        private String reason;
+        
+        public RowFailure() {}
+        
+        public RowFailure(long index, String transactionId, String reason) {
+            this.index = index;
+            this.transactionId = transactionId;
+            this.reason = reason;
+        }
+        
+        public long getIndex() {
+            return index;
+        }
+        
+        public void setIndex(long index) {
+            this.index = index;
+        }
+        
+        public String getTransactionId() {
+            return transactionId;
+        }
+        
+        public void setTransactionId(String transactionId) {
+            this.transactionId = transactionId;
+        }
+        
+        public String getReason() {
+            return reason;
+        }
+        
+        public void setReason(String reason) {
+            this.reason = reason;
+        }
+    }
+}
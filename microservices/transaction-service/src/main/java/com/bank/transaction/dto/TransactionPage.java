@@ -0,0 +1,33 @@
+package com.bank.transaction.dto;
+
+import com.bank.transaction.model.Transaction;
+
+import java.util.List;
+
+public class TransactionPage {
+    private List<Transaction> transactions;
+    private String next;
+    
+    public TransactionPage() {}
+    
+    public TransactionPage(List<Transaction> transactions, String next) {
+        this.transactions = transactions;
+        this.next = next;
+    }
+    
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+    
+    public void setTransactions(List<Transaction> transactions) {
+        this.transactions = transactions;
+    }
+    
+    public String getNext() {
+        return next;
+    }
+    
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
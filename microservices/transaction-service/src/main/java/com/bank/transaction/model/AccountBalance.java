@@ -0,0 +1,39 @@
+package com.bank.transaction.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "account_balances")
+public class AccountBalance {
+    
+    @Id
+    @Column(name = "account_id")
+    private String accountId;
+    
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance;
+    
+    public AccountBalance() {}
+    
+    public AccountBalance(String accountId, BigDecimal balance) {
+        this.accountId = accountId;
+        this.balance = balance;
+    }
+    
+    public String getAccountId() {
+        return accountId;
+    }
+    
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+    
+    public BigDecimal getBalance() {
+        return balance;
+    }
+    
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+}
@@ -0,0 +1,52 @@
+package com.bank.transaction.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One stripe of the bank-wide total, numbered from 1; the total is the sum of all rows. Each customer's postings
+// go to one stripe, so postings for different customers rarely wait on the same row lock
+@Entity
+@Table(name = "bank_balance")
+public class BankBalance {
+    
+    @Id
+    private Long id;
+    
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance;
+    
+    private LocalDateTime rebuiltAt;
+    
+    public BankBalance() {}
+    
+    public BankBalance(Long id, BigDecimal balance) {
+        this.id = id;
+        this.balance = balance;
+        this.rebuiltAt = LocalDateTime.now();
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public BigDecimal getBalance() {
+        return balance;
+    }
+    
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+    
+    public LocalDateTime getRebuiltAt() {
+        return rebuiltAt;
+    }
+    
+    public void setRebuiltAt(LocalDateTime rebuiltAt) {
+        this.rebuiltAt = rebuiltAt;
+    }
+}
@@ -0,0 +1,39 @@
+package com.bank.transaction.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "customer_balances")
+public class CustomerBalance {
+    
+    @Id
+    @Column(name = "customer_ssn_id")
+    private String customerSsnId;
+    
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance;
+    
+    public CustomerBalance() {}
+    
+    public CustomerBalance(String customerSsnId, BigDecimal balance) {
+        this.customerSsnId = customerSsnId;
+        this.balance = balance;
+    }
+    
+    public String getCustomerSsnId() {
+        return customerSsnId;
+    }
+    
+    public void setCustomerSsnId(String customerSsnId) {
+        this.customerSsnId = customerSsnId;
+    }
+    
+    public BigDecimal getBalance() {
+        return balance;
+    }
+    
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+}
@@ -7,12 +7,17 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    @Index(name = "idx_transactions_date_id", columnList = "transaction_date, id"),
+    @Index(name = "idx_transactions_customer_date_id", columnList = "customer_ssn_id, transaction_date, id")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Transaction {
     
+    // Pooled sequence ids let Hibernate batch inserts; IDENTITY forces one round trip per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
     private Long id;
     
     @Column(unique = true)
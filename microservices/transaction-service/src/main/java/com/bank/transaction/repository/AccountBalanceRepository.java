@@ -0,0 +1,25 @@
+package com.bank.transaction.repository;
+
+import com.bank.transaction.model.AccountBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface AccountBalanceRepository extends JpaRepository<AccountBalance, String> {
+    
+    // Adds to the row or creates it. Callers hold the bank balance stripe of the account's customer, so two first
+    // postings for the same account run one after the other and the second adds to the row the first created
+    @Modifying
+    @Query(value = "MERGE INTO account_balances b "
+            + "USING (VALUES (:accountId, :delta)) AS d(account_id, delta) "
+            + "ON b.account_id = d.account_id "
+            + "WHEN MATCHED THEN UPDATE SET balance = b.balance + d.delta "
+            + "WHEN NOT MATCHED THEN INSERT (account_id, balance) VALUES (d.account_id, d.delta)",
+            nativeQuery = true)
+    int mergeDelta(@Param("accountId") String accountId, @Param("delta") BigDecimal delta);
+}
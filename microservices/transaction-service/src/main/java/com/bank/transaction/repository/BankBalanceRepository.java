@@ -0,0 +1,38 @@
+package com.bank.transaction.repository;
+
+import com.bank.transaction.model.BankBalance;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface BankBalanceRepository extends JpaRepository<BankBalance, Long> {
+    
+    @Modifying
+    @Query("UPDATE BankBalance b SET b.balance = b.balance + :delta WHERE b.id = :id")
+    int applyDelta(@Param("id") Long id, @Param("delta") BigDecimal delta);
+    
+    // Creates the stripe on a fresh database; leaves an existing row untouched
+    @Modifying
+    @Query(value = "MERGE INTO bank_balance b USING (VALUES (:id)) AS d(id) ON b.id = d.id "
+            + "WHEN NOT MATCHED THEN INSERT (id, balance) VALUES (d.id, 0)",
+            nativeQuery = true)
+    int createIfAbsent(@Param("id") Long id);
+    
+    // Every posting updates a stripe, so holding all of their locks keeps postings out while the ledger is summed.
+    // Rows are locked in id order, the same order postings touching several stripes use
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BankBalance b ORDER BY b.id")
+    List<BankBalance> findAllForUpdate();
+    
+    // Null when there are no stripes yet
+    @Query("SELECT SUM(b.balance) FROM BankBalance b")
+    BigDecimal sumBalances();
+}
@@ -0,0 +1,25 @@
+package com.bank.transaction.repository;
+
+import com.bank.transaction.model.CustomerBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface CustomerBalanceRepository extends JpaRepository<CustomerBalance, String> {
+    
+    // Adds to the row or creates it. Callers hold the customer's bank balance stripe, so two first postings for the
+    // same customer run one after the other and the second adds to the row the first created
+    @Modifying
+    @Query(value = "MERGE INTO customer_balances b "
+            + "USING (VALUES (:customerSsnId, :delta)) AS d(customer_ssn_id, delta) "
+            + "ON b.customer_ssn_id = d.customer_ssn_id "
+            + "WHEN MATCHED THEN UPDATE SET balance = b.balance + d.delta "
+            + "WHEN NOT MATCHED THEN INSERT (customer_ssn_id, balance) VALUES (d.customer_ssn_id, d.delta)",
+            nativeQuery = true)
+    int mergeDelta(@Param("customerSsnId") String customerSsnId, @Param("delta") BigDecimal delta);
+}
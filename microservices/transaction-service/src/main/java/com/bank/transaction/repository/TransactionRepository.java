@@ -1,11 +1,23 @@
 package com.bank.transaction.repository;
 
 import com.bank.transaction.model.Transaction;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
@@ -19,4 +31,46 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     boolean existsByTransactionId(String transactionId);
     
     long countByCustomerSsnId(String customerSsnId);
+    
+    @Query("SELECT t.transactionId FROM Transaction t WHERE t.transactionId IN :transactionIds")
+    List<String> findExistingTransactionIds(@Param("transactionIds") Collection<String> transactionIds);
+    
+    // Keyset pages, newest first, ordered on (transaction_date, id)
+    @Query("SELECT t FROM Transaction t ORDER BY t.date DESC, t.id DESC")
+    List<Transaction> findFirstPage(Pageable pageable);
+    
+    @Query("SELECT t FROM Transaction t WHERE t.date < :date OR (t.date = :date AND t.id < :id) " +
+           "ORDER BY t.date DESC, t.id DESC")
+    List<Transaction> findPageAfter(@Param("date") LocalDateTime date, @Param("id") Long id, Pageable pageable);
+    
+    @Query("SELECT t FROM Transaction t WHERE t.customerSsnId = :customerSsnId ORDER BY t.date DESC, t.id DESC")
+    List<Transaction> findFirstPageByCustomer(@Param("customerSsnId") String customerSsnId, Pageable pageable);
+    
+    @Query("SELECT t FROM Transaction t WHERE t.customerSsnId = :customerSsnId " +
+           "AND (t.date < :date OR (t.date = :date AND t.id < :id)) ORDER BY t.date DESC, t.id DESC")
+    List<Transaction> findPageAfterByCustomer(@Param("customerSsnId") String customerSsnId,
+                                              @Param("date") LocalDateTime date, @Param("id") Long id,
+                                              Pageable pageable);
+    
+    // Cursor-backed streams; callers must consume them inside a transaction
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT t FROM Transaction t ORDER BY t.date DESC, t.id DESC")
+    Stream<Transaction> streamAll();
+    
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT t FROM Transaction t WHERE t.customerSsnId = :customerSsnId ORDER BY t.date DESC, t.id DESC")
+    Stream<Transaction> streamByCustomer(@Param("customerSsnId") String customerSsnId);
+    
+    String SIGNED_AMOUNT = "CASE WHEN t.type = com.bank.transaction.model.TransactionType.CREDIT THEN t.amount " +
+            "WHEN t.type = com.bank.transaction.model.TransactionType.DEBIT THEN -t.amount ELSE 0 END";
+    
+    @Query("SELECT COALESCE(SUM(" + SIGNED_AMOUNT + "), 0) FROM Transaction t")
+    BigDecimal sumSignedAmounts();
+    
+    @Query("SELECT t.customerSsnId, SUM(" + SIGNED_AMOUNT + ") FROM Transaction t GROUP BY t.customerSsnId")
+    List<Object[]> sumSignedAmountsByCustomer();
+    
+    @Query("SELECT t.accountId, SUM(" + SIGNED_AMOUNT + ") FROM Transaction t " +
+           "WHERE t.accountId IS NOT NULL GROUP BY t.accountId")
+    List<Object[]> sumSignedAmountsByAccount();
 }
\ No newline at end of file
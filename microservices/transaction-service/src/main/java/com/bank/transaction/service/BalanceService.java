@@ -0,0 +1,264 @@
+package com.bank.transaction.service;
+
+import com.bank.transaction.model.AccountBalance;
+import com.bank.transaction.model.BankBalance;
+import com.bank.transaction.model.CustomerBalance;
+import com.bank.transaction.model.Transaction;
+import com.bank.transaction.model.TransactionType;
+import com.bank.transaction.repository.AccountBalanceRepository;
+import com.bank.transaction.repository.BankBalanceRepository;
+import com.bank.transaction.repository.CustomerBalanceRepository;
+import com.bank.transaction.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+@Service
+public class BalanceService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BalanceService.class);
+    
+    @Autowired
+    private BankBalanceRepository bankBalanceRepository;
+    
+    @Autowired
+    private CustomerBalanceRepository customerBalanceRepository;
+    
+    @Autowired
+    private AccountBalanceRepository accountBalanceRepository;
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    // Rows the bank total is split over. Raising it takes effect for new postings at once; lowering it leaves the
+    // surplus rows in the total until the next rebuild zeroes them
+    @Value("${transactions.bank-balance.stripes:16}")
+    private int stripes;
+    
+    // Created before the web server takes requests: postings and rebuilds lock these rows, and concurrent first
+    // requests on an empty database would otherwise each try to insert them
+    @PostConstruct
+    public void createBankBalanceStripes() {
+        if (stripes < 1) {
+            throw new RuntimeException("transactions.bank-balance.stripes must be at least 1");
+        }
+        transactionTemplate.executeWithoutResult(status -> createStripes());
+    }
+    
+    // Must run inside the caller's transaction so the balances commit or roll back with the ledger row. The
+    // customer's bank balance stripe is always updated first and stays locked until commit, which keeps rebuild()
+    // from replacing the per-customer and per-account rows underneath a posting. An account belongs to one
+    // customer, so the stripe covers its account rows too
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyPosting(String customerSsnId, String accountId, BigDecimal delta) {
+        if (delta.signum() == 0) {
+            return;
+        }
+        
+        if (!applyToStripes(Map.of(stripe(customerSsnId), delta))) {
+            return;
+        }
+        mergeBalances(customerSsnId, accountId, delta);
+    }
+    
+    // Aggregates a batch so each touched balance row is updated once, not once per transaction
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyPostings(List<Transaction> transactions) {
+        Map<Long, BigDecimal> byStripe = new HashMap<>();
+        // Sorted, so concurrent batches lock shared rows in the same order
+        Map<String, BigDecimal> byCustomer = new TreeMap<>();
+        Map<String, BigDecimal> byAccount = new TreeMap<>();
+        
+        for (Transaction transaction : transactions) {
+            BigDecimal delta = signedAmount(transaction);
+            byStripe.merge(stripe(transaction.getCustomerSsnId()), delta, BigDecimal::add);
+            byCustomer.merge(transaction.getCustomerSsnId(), delta, BigDecimal::add);
+            if (transaction.getAccountId() != null) {
+                byAccount.merge(transaction.getAccountId(), delta, BigDecimal::add);
+            }
+        }
+        
+        if (!applyToStripes(byStripe)) {
+            return;
+        }
+        
+        byCustomer.forEach((customerSsnId, delta) -> {
+            if (delta.signum() != 0) {
+                customerBalanceRepository.mergeDelta(customerSsnId, delta);
+            }
+        });
+        byAccount.forEach((accountId, delta) -> {
+            if (delta.signum() != 0) {
+                accountBalanceRepository.mergeDelta(accountId, delta);
+            }
+        });
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyChange(String previousSsnId, String previousAccountId, BigDecimal previousAmount,
+                            Transaction updated) {
+        BigDecimal newAmount = signedAmount(updated);
+        
+        if (Objects.equals(previousSsnId, updated.getCustomerSsnId())
+                && Objects.equals(previousAccountId, updated.getAccountId())) {
+            applyPosting(updated.getCustomerSsnId(), updated.getAccountId(), newAmount.subtract(previousAmount));
+        } else {
+            // Both stripes are locked, in order, before either side's rows are touched
+            Map<Long, BigDecimal> byStripe = new HashMap<>();
+            byStripe.merge(stripe(previousSsnId), previousAmount.negate(), BigDecimal::add);
+            byStripe.merge(stripe(updated.getCustomerSsnId()), newAmount, BigDecimal::add);
+            if (!applyToStripes(byStripe)) {
+                return;
+            }
+            mergeBalances(previousSsnId, previousAccountId, previousAmount.negate());
+            mergeBalances(updated.getCustomerSsnId(), updated.getAccountId(), newAmount);
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalBankBalance() {
+        BigDecimal total = bankBalanceRepository.sumBalances();
+        return total != null ? total : transactionRepository.sumSignedAmounts();
+    }
+    
+    @Transactional(readOnly = true)
+    public BigDecimal getCustomerBalance(String customerSsnId) {
+        return customerBalanceRepository.findById(customerSsnId)
+                .map(CustomerBalance::getBalance)
+                .orElse(BigDecimal.ZERO);
+    }
+    
+    @Transactional(readOnly = true)
+    public BigDecimal getAccountBalance(String accountId) {
+        return accountBalanceRepository.findById(accountId)
+                .map(AccountBalance::getBalance)
+                .orElse(BigDecimal.ZERO);
+    }
+    
+    @Transactional
+    public Map<String, BigDecimal> rebuild() {
+        logger.info("Rebuilding balance projections from ledger");
+        
+        createStripes();
+        
+        // Lock before summing: a posting that committed earlier is in the sums, and one still in flight waits on
+        // its stripe and applies its delta on top of the rebuilt value. Postings take a stripe before touching the
+        // customer and account rows, so those tables can be emptied and refilled below without losing updates
+        List<BankBalance> bankBalances = bankBalanceRepository.findAllForUpdate();
+        // Stripes that were only just created have nothing to compare against
+        BigDecimal previous = null;
+        for (BankBalance bankBalance : bankBalances) {
+            if (bankBalance.getRebuiltAt() != null) {
+                previous = (previous != null ? previous : BigDecimal.ZERO).add(bankBalance.getBalance());
+            }
+        }
+        
+        customerBalanceRepository.deleteAllInBatch();
+        List<CustomerBalance> customerBalances = new ArrayList<>();
+        Map<Long, BigDecimal> byStripe = new HashMap<>();
+        BigDecimal rebuilt = BigDecimal.ZERO;
+        for (Object[] row : transactionRepository.sumSignedAmountsByCustomer()) {
+            String customerSsnId = (String) row[0];
+            BigDecimal balance = (BigDecimal) row[1];
+            customerBalances.add(new CustomerBalance(customerSsnId, balance));
+            byStripe.merge(stripe(customerSsnId), balance, BigDecimal::add);
+            rebuilt = rebuilt.add(balance);
+        }
+        customerBalanceRepository.saveAll(customerBalances);
+        
+        // Every ledger row has a customer, so the customer sums add up to the whole ledger; rows above the
+        // configured stripe count are zeroed
+        LocalDateTime rebuiltAt = LocalDateTime.now();
+        for (BankBalance bankBalance : bankBalances) {
+            bankBalance.setBalance(byStripe.getOrDefault(bankBalance.getId(), BigDecimal.ZERO));
+            bankBalance.setRebuiltAt(rebuiltAt);
+        }
+        
+        accountBalanceRepository.deleteAllInBatch();
+        List<AccountBalance> accountBalances = new ArrayList<>();
+        for (Object[] row : transactionRepository.sumSignedAmountsByAccount()) {
+            accountBalances.add(new AccountBalance((String) row[0], (BigDecimal) row[1]));
+        }
+        accountBalanceRepository.saveAll(accountBalances);
+        
+        if (previous != null && previous.compareTo(rebuilt) != 0) {
+            logger.warn("Bank balance drift detected: stored {}, ledger {}", previous, rebuilt);
+        }
+        logger.info("Balances rebuilt: bank {}, {} customers, {} accounts",
+                rebuilt, customerBalances.size(), accountBalances.size());
+        
+        Map<String, BigDecimal> result = new LinkedHashMap<>();
+        result.put("previousBalance", previous);
+        result.put("rebuiltBalance", rebuilt);
+        result.put("drift", previous != null ? rebuilt.subtract(previous) : null);
+        return result;
+    }
+    
+    // Applies each stripe's delta in stripe order, so postings that touch several stripes cannot deadlock. Returns
+    // false when a stripe is missing, after rebuilding from the ledger, which already contains the change
+    private boolean applyToStripes(Map<Long, BigDecimal> byStripe) {
+        // Updated even when a delta is zero, so the stripe lock is held like for any other posting
+        for (Map.Entry<Long, BigDecimal> stripe : new TreeMap<>(byStripe).entrySet()) {
+            if (bankBalanceRepository.applyDelta(stripe.getKey(), stripe.getValue()) == 0) {
+                logger.warn("Bank balance stripe {} missing, rebuilding from ledger", stripe.getKey());
+                rebuild();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void mergeBalances(String customerSsnId, String accountId, BigDecimal delta) {
+        if (delta.signum() == 0) {
+            return;
+        }
+        if (customerSsnId != null) {
+            customerBalanceRepository.mergeDelta(customerSsnId, delta);
+        }
+        if (accountId != null) {
+            accountBalanceRepository.mergeDelta(accountId, delta);
+        }
+    }
+    
+    private void createStripes() {
+        for (long id = 1; id <= stripes; id++) {
+            bankBalanceRepository.createIfAbsent(id);
+        }
+    }
+    
+    // Stripe ids run from 1 to the configured count
+    long stripe(String customerSsnId) {
+        return customerSsnId == null ? 1 : Math.floorMod(customerSsnId.hashCode(), stripes) + 1;
+    }
+    
+    public BigDecimal signedAmount(Transaction transaction) {
+        if (transaction.getAmount() == null) {
+            return BigDecimal.ZERO;
+        }
+        if (transaction.getType() == TransactionType.CREDIT) {
+            return transaction.getAmount();
+        } else if (transaction.getType() == TransactionType.DEBIT) {
+            return transaction.getAmount().negate();
+        }
+        return BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,217 @@
+package com.bank.transaction.service;
+
+import com.bank.transaction.dto.BulkIngestResponse;
+import com.bank.transaction.model.Transaction;
+import com.bank.transaction.repository.TransactionRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Service
+public class BulkIngestionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BulkIngestionService.class);
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Autowired
+    private CustomerValidationService customerValidationService;
+    
+    @Autowired
+    private BalanceService balanceService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${transactions.bulk.batch-size:500}")
+    private int batchSize;
+    
+    // Failed rows listed in the response; a bad upload of millions of rows is only counted past this
+    @Value("${transactions.bulk.max-reported-failures:1000}")
+    private int maxReportedFailures;
+    
+    // Reads a JSON array row by row so the whole file is never held in memory
+    public BulkIngestResponse ingest(InputStream body) throws IOException {
+        long started = System.currentTimeMillis();
+        BulkIngestResponse result = new BulkIngestResponse(maxReportedFailures);
+        
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new RuntimeException("Bulk body must be a JSON array of transactions");
+            }
+            
+            List<Row> batch = new ArrayList<>(batchSize);
+            long index = 0;
+            String problem = null;
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                    JsonNode node = parser.readValueAsTree();
+                    batch.add(toRow(index++, node, result));
+                    if (batch.size() >= batchSize) {
+                        processBatch(batch, result);
+                        batch.clear();
+                    }
+                }
+                if (token != JsonToken.END_ARRAY) {
+                    problem = "Element " + index + " is not a JSON object";
+                }
+            } catch (JsonProcessingException e) {
+                // Includes a body that ends before the closing ]
+                problem = "Malformed JSON at element " + index + ": " + e.getOriginalMessage();
+            }
+            result.setReceived(index);
+            
+            if (problem != null) {
+                // Earlier batches are already committed; the pending one is dropped so the upload can be resumed
+                // from its first row
+                long resumeFrom = index - batch.size();
+                result.setError(problem + "; rows from index " + resumeFrom + " on were not inserted");
+                result.setElapsedMillis(System.currentTimeMillis() - started);
+                logger.warn("Bulk ingestion rejected after {} inserted rows: {}", result.getInserted(), problem);
+                return result;
+            }
+            if (!batch.isEmpty()) {
+                processBatch(batch, result);
+            }
+        }
+        
+        result.setElapsedMillis(System.currentTimeMillis() - started);
+        logger.info("Bulk ingestion finished: {} received, {} inserted, {} failed in {} ms",
+                result.getReceived(), result.getInserted(), result.getFailed(), result.getElapsedMillis());
+        return result;
+    }
+    
+    private Row toRow(long index, JsonNode node, BulkIngestResponse result) {
+        try {
+            Transaction transaction = objectMapper.treeToValue(node, Transaction.class);
+            transaction.setId(null);
+            return new Row(index, transaction);
+        } catch (Exception e) {
+            result.addFailure(index, node.path("transactionId").asText(null), "Unreadable row: " + e.getMessage());
+            return new Row(index, null);
+        }
+    }
+    
+    private void processBatch(List<Row> batch, BulkIngestResponse result) {
+        List<Row> candidates = new ArrayList<>(batch.size());
+        Set<String> customerSsnIds = new HashSet<>();
+        
+        for (Row row : batch) {
+            if (row.transaction == null) {
+                continue;
+            }
+            String problem = validate(row.transaction);
+            if (problem != null) {
+                result.addFailure(row.index, row.transaction.getTransactionId(), problem);
+                continue;
+            }
+            if (row.transaction.getTransactionId() == null) {
+                row.transaction.setTransactionId(UUID.randomUUID().toString());
+            }
+            if (row.transaction.getDate() == null) {
+                row.transaction.setDate(LocalDateTime.now());
+            }
+            customerSsnIds.add(row.transaction.getCustomerSsnId());
+            candidates.add(row);
+        }
+        
+        // One existence check per distinct customer in the batch rather than one per row
+        Set<String> knownCustomers = customerValidationService.existingCustomers(customerSsnIds);
+        
+        Set<String> batchIds = new HashSet<>();
+        for (Row row : candidates) {
+            batchIds.add(row.transaction.getTransactionId());
+        }
+        Set<String> existingIds = batchIds.isEmpty()
+                ? Set.of() : new HashSet<>(transactionRepository.findExistingTransactionIds(batchIds));
+        
+        List<Row> accepted = new ArrayList<>(candidates.size());
+        Set<String> seenIds = new HashSet<>();
+        for (Row row : candidates) {
+            Transaction transaction = row.transaction;
+            if (!knownCustomers.contains(transaction.getCustomerSsnId())) {
+                result.addFailure(row.index, transaction.getTransactionId(),
+                        "Customer not found with SSN ID: " + transaction.getCustomerSsnId());
+            } else if (existingIds.contains(transaction.getTransactionId())
+                    || !seenIds.add(transaction.getTransactionId())) {
+                result.addFailure(row.index, transaction.getTransactionId(), "Duplicate transaction ID");
+            } else {
+                accepted.add(row);
+            }
+        }
+        
+        if (accepted.isEmpty()) {
+            return;
+        }
+        
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Transaction> transactions = new ArrayList<>(accepted.size());
+                for (Row row : accepted) {
+                    entityManager.persist(row.transaction);
+                    transactions.add(row.transaction);
+                }
+                entityManager.flush();
+                entityManager.clear();
+                balanceService.applyPostings(transactions);
+            });
+            result.setInserted(result.getInserted() + accepted.size());
+        } catch (Exception e) {
+            logger.error("Bulk batch of {} rows failed: {}", accepted.size(), e.getMessage());
+            for (Row row : accepted) {
+                result.addFailure(row.index, row.transaction.getTransactionId(), "Batch insert failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    private String validate(Transaction transaction) {
+        if (transaction.getCustomerSsnId() == null || transaction.getCustomerSsnId().isBlank()) {
+            return "customerSsnId is required";
+        }
+        if (transaction.getAmount() == null || transaction.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return "amount must be positive";
+        }
+        if (transaction.getType() == null) {
+            return "type is required";
+        }
+        return null;
+    }
+    
+    private static class Row {
+        private final long index;
+        private final Transaction transaction;
+        
+        Row(long index, Transaction transaction) {
+            this.index = index;
+            this.transaction = transaction;
+        }
+    }
+}
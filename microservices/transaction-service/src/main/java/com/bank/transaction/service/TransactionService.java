@@ -1,17 +1,28 @@
 package com.bank.transaction.service;
 
+import com.bank.transaction.dto.TransactionPage;
 import com.bank.transaction.model.Transaction;
-import com.bank.transaction.model.TransactionType;
 import com.bank.transaction.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionService {
@@ -24,14 +35,24 @@ public class TransactionService {
     @Autowired
     private CustomerValidationService customerValidationService;
     
+    @Autowired
+    private BalanceService balanceService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${transactions.page.max-limit:1000}")
+    private int maxPageLimit;
+    
+    // Not @Transactional: the customer check may call customer-service, and must not hold a connection or the
+    // customer's bank balance stripe while it waits. Only the ledger row and balance updates run in the transaction
     public Transaction createTransaction(Transaction transaction, String customerSsnId) {
         logger.info("Creating transaction for customer: {}", customerSsnId);
         
-        // Validate customer exists
-        if (!customerValidationService.customerExists(customerSsnId)) {
-            logger.error("Customer not found: {}", customerSsnId);
-            throw new RuntimeException("Customer not found with SSN ID: " + customerSsnId);
-        }
+        validateCustomer(customerSsnId);
         
         // Set customer SSN ID
         transaction.setCustomerSsnId(customerSsnId);
@@ -46,7 +67,12 @@ public class TransactionService {
             transaction.setDate(LocalDateTime.now());
         }
         
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        Transaction savedTransaction = transactionTemplate.execute(status -> {
+            Transaction saved = transactionRepository.save(transaction);
+            balanceService.applyPosting(saved.getCustomerSsnId(), saved.getAccountId(),
+                    balanceService.signedAmount(saved));
+            return saved;
+        });
         logger.info("Transaction created successfully: {}", savedTransaction.getTransactionId());
         
         return savedTransaction;
@@ -78,10 +104,72 @@ public class TransactionService {
         return transactionRepository.findByCustomerSsnIdOrderByDateDesc(customerSsnId);
     }
     
+    public TransactionPage getTransactionsPage(int limit, String next) {
+        logger.info("Fetching transactions page (limit {})", limit);
+        PageRequest page = PageRequest.of(0, clampLimit(limit) + 1);
+        
+        List<Transaction> transactions;
+        if (next == null) {
+            transactions = transactionRepository.findFirstPage(page);
+        } else {
+            Cursor cursor = Cursor.decode(next);
+            transactions = transactionRepository.findPageAfter(cursor.date, cursor.id, page);
+        }
+        return toPage(transactions, clampLimit(limit));
+    }
+    
+    public TransactionPage getTransactionsPageByCustomer(String customerSsnId, int limit, String next) {
+        logger.info("Fetching transactions page for customer: {} (limit {})", customerSsnId, limit);
+        validateCustomer(customerSsnId);
+        
+        PageRequest page = PageRequest.of(0, clampLimit(limit) + 1);
+        
+        List<Transaction> transactions;
+        if (next == null) {
+            transactions = transactionRepository.findFirstPageByCustomer(customerSsnId, page);
+        } else {
+            Cursor cursor = Cursor.decode(next);
+            transactions = transactionRepository.findPageAfterByCustomer(customerSsnId, cursor.date, cursor.id, page);
+        }
+        return toPage(transactions, clampLimit(limit));
+    }
+    
+    @Transactional(readOnly = true)
+    public void streamAllTransactions(Consumer<Transaction> consumer) {
+        logger.info("Streaming all transactions");
+        try (Stream<Transaction> transactions = transactionRepository.streamAll()) {
+            transactions.forEach(transaction -> {
+                consumer.accept(transaction);
+                entityManager.detach(transaction);
+            });
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public void streamTransactionsByCustomer(String customerSsnId, Consumer<Transaction> consumer) {
+        logger.info("Streaming transactions for customer: {}", customerSsnId);
+        try (Stream<Transaction> transactions = transactionRepository.streamByCustomer(customerSsnId)) {
+            transactions.forEach(transaction -> {
+                consumer.accept(transaction);
+                entityManager.detach(transaction);
+            });
+        }
+    }
+    
+    public void validateCustomer(String customerSsnId) {
+        if (!customerValidationService.customerExists(customerSsnId)) {
+            logger.error("Customer not found: {}", customerSsnId);
+            throw new RuntimeException("Customer not found with SSN ID: " + customerSsnId);
+        }
+    }
+    
+    @Transactional
     public Transaction updateTransaction(String transactionId, Transaction transactionDetails) {
         logger.info("Updating transaction: {}", transactionId);
         
         Transaction existingTransaction = getTransactionById(transactionId);
+        String previousAccountId = existingTransaction.getAccountId();
+        BigDecimal previousAmount = balanceService.signedAmount(existingTransaction);
         
         // Update fields (preserve customer SSN ID and transaction ID)
         if (transactionDetails.getAccountId() != null) {
@@ -98,16 +186,21 @@ public class TransactionService {
         }
         
         Transaction updatedTransaction = transactionRepository.save(existingTransaction);
+        balanceService.applyChange(updatedTransaction.getCustomerSsnId(), previousAccountId, previousAmount,
+                updatedTransaction);
         logger.info("Transaction updated successfully: {}", transactionId);
         
         return updatedTransaction;
     }
     
+    @Transactional
     public void deleteTransaction(String transactionId) {
         logger.info("Deleting transaction: {}", transactionId);
         
         Transaction transaction = getTransactionById(transactionId);
         transactionRepository.delete(transaction);
+        balanceService.applyPosting(transaction.getCustomerSsnId(), transaction.getAccountId(),
+                balanceService.signedAmount(transaction).negate());
         
         logger.info("Transaction deleted successfully: {}", transactionId);
     }
@@ -117,20 +210,65 @@ public class TransactionService {
     }
     
     public double getTotalBankBalance() {
-        logger.info("Calculating total bank balance");
-        List<Transaction> allTransactions = transactionRepository.findAll();
+        BigDecimal totalBalance = balanceService.getTotalBankBalance();
+        logger.info("Total bank balance: {}", totalBalance);
+        return totalBalance.doubleValue();
+    }
+    
+    public BigDecimal getCustomerBalance(String customerSsnId) {
+        logger.info("Fetching balance for customer: {}", customerSsnId);
+        return balanceService.getCustomerBalance(customerSsnId);
+    }
+    
+    public BigDecimal getAccountBalance(String accountId) {
+        logger.info("Fetching balance for account: {}", accountId);
+        return balanceService.getAccountBalance(accountId);
+    }
+    
+    public Map<String, BigDecimal> rebuildTotalBankBalance() {
+        return balanceService.rebuild();
+    }
+    
+    private int clampLimit(int limit) {
+        if (limit < 1) {
+            throw new RuntimeException("Page limit must be positive");
+        }
+        return Math.min(limit, maxPageLimit);
+    }
+    
+    private TransactionPage toPage(List<Transaction> transactions, int limit) {
+        if (transactions.size() <= limit) {
+            return new TransactionPage(transactions, null);
+        }
+        List<Transaction> pageItems = transactions.subList(0, limit);
+        Transaction last = pageItems.get(limit - 1);
+        return new TransactionPage(pageItems, new Cursor(last.getDate(), last.getId()).encode());
+    }
+    
+    // Opaque "next" token: base64url of "<transaction_date>|<id>" of the last row returned
+    private static class Cursor {
+        private final LocalDateTime date;
+        private final Long id;
         
-        BigDecimal totalBalance = BigDecimal.ZERO;
+        Cursor(LocalDateTime date, Long id) {
+            this.date = date;
+            this.id = id;
+        }
         
-        for (Transaction transaction : allTransactions) {
-            if (transaction.getType() == TransactionType.CREDIT) {
-                totalBalance = totalBalance.add(transaction.getAmount());
-            } else if (transaction.getType() == TransactionType.DEBIT) {
-                totalBalance = totalBalance.subtract(transaction.getAmount());
-            }
+        String encode() {
+            String raw = date + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
         }
         
-        logger.info("Total bank balance calculated: {}", totalBalance);
-        return totalBalance.doubleValue();
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.valueOf(raw.substring(separator + 1)));
+            } catch (Exception e) {
+                throw new RuntimeException("Invalid page token: " + token);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.bank.transaction;
+
+import com.bank.security.IdentityAssertion;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Rows per second into the ledger through one POST /transactions/bulk upload and through one client posting the
+// same kind of rows one by one to POST /transactions/customer/{ssn}. A stub customer-service knows every customer,
+// so both paths pay for validation but never wait on a real backend. Run after test-compile with:
+//   java -cp target/test-classes:target/classes:<test classpath> com.bank.transaction.BulkIngestScenario
+//        [bulk rows] [single rows]
+public class BulkIngestScenario {
+    
+    private static final int CUSTOMERS = 1_000;
+    
+    public static void main(String[] args) throws Exception {
+        int bulkRows = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int singleRows = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        HttpServer customers = stub();
+        ConfigurableApplicationContext service = SpringApplication.run(TransactionServiceApplication.class,
+                "--server.port=0",
+                "--logging.level.root=ERROR",
+                "--logging.level.com.bank=ERROR",
+                "--logging.level.com.bank.transaction=ERROR",
+                "--services.customer.url=http://localhost:" + customers.getAddress().getPort());
+        try {
+            String base = "http://localhost:" + service.getEnvironment().getProperty("local.server.port");
+            IdentityAssertion identityAssertion = service.getBean(IdentityAssertion.class);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            
+            // Warms both paths, and the customer existence cache, before timing
+            bulk(client, base, identityAssertion, CUSTOMERS);
+            single(client, base, identityAssertion, 200);
+            
+            double bulkRate = bulk(client, base, identityAssertion, bulkRows);
+            double singleRate = single(client, base, identityAssertion, singleRows);
+            System.out.printf("bulk   %,7d rows  %,9.0f rows/s%n", bulkRows, bulkRate);
+            System.out.printf("single %,7d rows  %,9.0f rows/s%n", singleRows, singleRate);
+            System.out.printf("bulk is %.0fx single posting%n", bulkRate / singleRate);
+        } finally {
+            service.close();
+            customers.stop(0);
+            ((ExecutorService) customers.getExecutor()).shutdown();
+        }
+    }
+    
+    private static double bulk(HttpClient client, String base, IdentityAssertion identityAssertion, int rows)
+            throws Exception {
+        StringBuilder body = new StringBuilder(rows * 120).append('[');
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(row(i));
+        }
+        body.append(']');
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/transactions/bulk"))
+                .header("Content-Type", "application/json")
+                .header(IdentityAssertion.HEADER, assertion(identityAssertion))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        
+        long started = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        long elapsed = System.nanoTime() - started;
+        if (response.statusCode() != 200 || !response.body().contains("\"failed\":0")) {
+            throw new RuntimeException("Bulk upload answered " + response.statusCode() + ": " + response.body());
+        }
+        return rows * 1e9 / elapsed;
+    }
+    
+    private static double single(HttpClient client, String base, IdentityAssertion identityAssertion, int rows)
+            throws Exception {
+        String assertion = assertion(identityAssertion);
+        long started = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/transactions/customer/" + customer(i)))
+                    .header("Content-Type", "application/json")
+                    .header(IdentityAssertion.HEADER, assertion)
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"accountId\":\"ACC" + customer(i) + "\",\"amount\":12.50,\"type\":\"CREDIT\"}"))
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 201) {
+                throw new RuntimeException("Single posting answered " + response.statusCode());
+            }
+        }
+        return rows * 1e9 / (System.nanoTime() - started);
+    }
+    
+    private static String row(int i) {
+        return "{\"customerSsnId\":\"" + customer(i) + "\",\"accountId\":\"ACC" + customer(i)
+                + "\",\"amount\":12.50,\"type\":\"" + (i % 3 == 0 ? "DEBIT" : "CREDIT")
+                + "\",\"modeOfTransaction\":\"BULK\"}";
+    }
+    
+    private static String customer(int i) {
+        return String.valueOf(1_000_000 + i % CUSTOMERS);
+    }
+    
+    private static String assertion(IdentityAssertion identityAssertion) {
+        return identityAssertion.sign("load-test", List.of("EMPLOYEE"), new Date(System.currentTimeMillis() + 600_000));
+    }
+    
+    // Answers POST /customers/exists with true for every SSN it is sent
+    private static HttpServer stub() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.createContext("/customers/exists", exchange -> {
+            String ssnIds;
+            try (InputStream body = exchange.getRequestBody()) {
+                ssnIds = new String(body.readAllBytes(), StandardCharsets.UTF_8).replaceAll("[\\[\\]\\s]", "");
+            }
+            StringBuilder answer = new StringBuilder("{");
+            for (String ssnId : ssnIds.split(",")) {
+                if (!ssnId.isEmpty()) {
+                    answer.append(answer.length() > 1 ? "," : "").append(ssnId).append(":true");
+                }
+            }
+            byte[] response = answer.append('}').toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,29 @@
+package com.bank.transaction.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkIngestResponseTest {
+    
+    @Test
+    void failuresPastTheCapAreCountedButNotListed() {
+        BulkIngestResponse response = new BulkIngestResponse(3);
+        
+        for (int i = 0; i < 3; i++) {
+            response.addFailure(i, "tx-" + i, "amount must be positive");
+        }
+        assertFalse(response.isFailuresTruncated());
+        
+        for (int i = 3; i < 10_000; i++) {
+            response.addFailure(i, "tx-" + i, "amount must be positive");
+        }
+        
+        assertEquals(10_000, response.getFailed());
+        assertEquals(3, response.getFailures().size());
+        assertEquals(2, response.getFailures().get(2).getIndex());
+        assertTrue(response.isFailuresTruncated());
+    }
+}
@@ -0,0 +1,241 @@
+package com.bank.transaction.service;
+
+import com.bank.transaction.model.AccountBalance;
+import com.bank.transaction.model.BankBalance;
+import com.bank.transaction.model.CustomerBalance;
+import com.bank.transaction.model.Transaction;
+import com.bank.transaction.model.TransactionType;
+import com.bank.transaction.repository.AccountBalanceRepository;
+import com.bank.transaction.repository.BankBalanceRepository;
+import com.bank.transaction.repository.CustomerBalanceRepository;
+import com.bank.transaction.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Rebuilds the balance projections over a large synthetic ledger while postings, batches and changes keep arriving,
+// then checks every projection against a direct scan of the ledger
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:balance_rebuild_test;LOCK_TIMEOUT=30000",
+        "logging.level.com.bank.transaction=WARN"})
+class BalanceRebuildTest {
+    
+    private static final int LEDGER_ROWS = 200_000;
+    
+    private static final int CUSTOMERS = 5_000;
+    
+    // Clear of the ids Hibernate draws from transaction_seq during the test
+    private static final long FIRST_SYNTHETIC_ID = 100_000_000L;
+    
+    private static final int POSTING_THREADS = 4;
+    
+    @Autowired
+    private BalanceService balanceService;
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Autowired
+    private BankBalanceRepository bankBalanceRepository;
+    
+    @Autowired
+    private CustomerBalanceRepository customerBalanceRepository;
+    
+    @Autowired
+    private AccountBalanceRepository accountBalanceRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Test
+    void rebuildDuringConcurrentPostingsMatchesALedgerScan() throws Exception {
+        loadSyntheticLedger();
+        
+        long scanStarted = System.nanoTime();
+        BigDecimal scanned = transactionRepository.sumSignedAmounts();
+        transactionRepository.sumSignedAmountsByCustomer();
+        transactionRepository.sumSignedAmountsByAccount();
+        long scanMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scanStarted);
+        
+        long rebuildStarted = System.nanoTime();
+        Map<String, BigDecimal> first = balanceService.rebuild();
+        long rebuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - rebuildStarted);
+        assertEquals(0, scanned.compareTo(first.get("rebuiltBalance")));
+        System.out.printf("%d ledger rows: scan %d ms, rebuild %d ms%n", LEDGER_ROWS, scanMillis, rebuildMillis);
+        
+        AtomicBoolean rebuilding = new AtomicBoolean(true);
+        ExecutorService posters = Executors.newFixedThreadPool(POSTING_THREADS);
+        List<Future<Integer>> postings = new ArrayList<>();
+        for (int thread = 0; thread < POSTING_THREADS; thread++) {
+            int seed = thread;
+            postings.add(posters.submit(() -> post(seed, rebuilding)));
+        }
+        for (int i = 0; i < 3; i++) {
+            Map<String, BigDecimal> result = balanceService.rebuild();
+            // Every posting commits its ledger row and its balance updates together, so nothing drifts
+            assertEquals(0, result.get("drift").signum(), "drift after concurrent postings: " + result);
+        }
+        rebuilding.set(false);
+        int posted = 0;
+        for (Future<Integer> count : postings) {
+            posted += count.get(2, TimeUnit.MINUTES);
+        }
+        posters.shutdown();
+        System.out.printf("%d postings applied while rebuilding%n", posted);
+        
+        assertProjectionsMatchLedger();
+    }
+    
+    @Test
+    void rebuildReportsAndRepairsDrift() {
+        balanceService.rebuild();
+        BigDecimal ledger = transactionRepository.sumSignedAmounts();
+        
+        transactionTemplate.executeWithoutResult(status ->
+                bankBalanceRepository.applyDelta(2L, new BigDecimal("12.34")));
+        Map<String, BigDecimal> result = balanceService.rebuild();
+        
+        assertEquals(0, new BigDecimal("-12.34").compareTo(result.get("drift")));
+        assertEquals(0, ledger.compareTo(balanceService.getTotalBankBalance()));
+        assertProjectionsMatchLedger();
+    }
+    
+    // Until rebuilding stops, alternates single postings, 20-row batches and amount changes to existing rows
+    private int post(int seed, AtomicBoolean rebuilding) {
+        Random random = new Random(seed);
+        int posted = 0;
+        while (rebuilding.get() || posted < 50) {
+            switch (posted % 3) {
+                case 0 -> transactionTemplate.executeWithoutResult(status -> {
+                    Transaction saved = transactionRepository.save(transaction(random));
+                    balanceService.applyPosting(saved.getCustomerSsnId(), saved.getAccountId(),
+                            balanceService.signedAmount(saved));
+                });
+                case 1 -> transactionTemplate.executeWithoutResult(status -> {
+                    List<Transaction> batch = new ArrayList<>();
+                    for (int i = 0; i < 20; i++) {
+                        batch.add(transaction(random));
+                    }
+                    balanceService.applyPostings(transactionRepository.saveAll(batch));
+                });
+                default -> transactionTemplate.executeWithoutResult(status -> {
+                    // Threads change disjoint rows, so no change is lost to another
+                    long id = FIRST_SYNTHETIC_ID + seed
+                            + (long) POSTING_THREADS * random.nextInt(LEDGER_ROWS / POSTING_THREADS);
+                    Transaction existing = transactionRepository.findById(id).orElseThrow();
+                    String previousAccountId = existing.getAccountId();
+                    BigDecimal previousAmount = balanceService.signedAmount(existing);
+                    existing.setAmount(amount(random));
+                    existing.setAccountId(existing.getCustomerSsnId() + (random.nextBoolean() ? "-A" : "-B"));
+                    balanceService.applyChange(existing.getCustomerSsnId(), previousAccountId, previousAmount,
+                            transactionRepository.save(existing));
+                });
+            }
+            posted++;
+        }
+        return posted;
+    }
+    
+    private void assertProjectionsMatchLedger() {
+        Map<String, BigDecimal> customers = new HashMap<>();
+        for (Object[] row : transactionRepository.sumSignedAmountsByCustomer()) {
+            customers.put((String) row[0], (BigDecimal) row[1]);
+        }
+        Map<String, BigDecimal> accounts = new HashMap<>();
+        for (Object[] row : transactionRepository.sumSignedAmountsByAccount()) {
+            accounts.put((String) row[0], (BigDecimal) row[1]);
+        }
+        
+        List<CustomerBalance> customerBalances = customerBalanceRepository.findAll();
+        assertEquals(customers.size(), customerBalances.size());
+        Map<Long, BigDecimal> byStripe = new HashMap<>();
+        for (CustomerBalance balance : customerBalances) {
+            assertEquals(0, customers.get(balance.getCustomerSsnId()).compareTo(balance.getBalance()),
+                    balance.getCustomerSsnId());
+            byStripe.merge(balanceService.stripe(balance.getCustomerSsnId()), balance.getBalance(), BigDecimal::add);
+        }
+        
+        List<AccountBalance> accountBalances = accountBalanceRepository.findAll();
+        int nonEmptyAccounts = 0;
+        for (AccountBalance balance : accountBalances) {
+            BigDecimal scanned = accounts.getOrDefault(balance.getAccountId(), BigDecimal.ZERO);
+            assertEquals(0, scanned.compareTo(balance.getBalance()), balance.getAccountId());
+            if (accounts.containsKey(balance.getAccountId())) {
+                nonEmptyAccounts++;
+            }
+        }
+        assertEquals(accounts.size(), nonEmptyAccounts);
+        
+        // Each stripe holds exactly its customers' balances, and the stripes add up to the ledger
+        for (BankBalance stripe : bankBalanceRepository.findAll()) {
+            assertEquals(0, byStripe.getOrDefault(stripe.getId(), BigDecimal.ZERO).compareTo(stripe.getBalance()),
+                    "stripe " + stripe.getId());
+        }
+        assertEquals(0, transactionRepository.sumSignedAmounts().compareTo(balanceService.getTotalBankBalance()));
+    }
+    
+    private void loadSyntheticLedger() {
+        Random random = new Random(42);
+        Timestamp date = Timestamp.valueOf(LocalDateTime.now().minusDays(30));
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < LEDGER_ROWS; i++) {
+            String customer = customer(random);
+            TransactionType type = random.nextInt(3) == 0 ? TransactionType.DEBIT : TransactionType.CREDIT;
+            rows.add(new Object[] {FIRST_SYNTHETIC_ID + i, UUID.randomUUID().toString(), customer, customer + "-A",
+                    date, "SYNTHETIC", amount(random), type.name()});
+            if (rows.size() == 5_000) {
+                insert(rows);
+                rows.clear();
+            }
+        }
+        insert(rows);
+    }
+    
+    private void insert(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO transactions (id, transaction_id, customer_ssn_id, account_id, "
+                + "transaction_date, mode_of_transaction, amount, type) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+    
+    private Transaction transaction(Random random) {
+        String customer = customer(random);
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(UUID.randomUUID().toString());
+        transaction.setCustomerSsnId(customer);
+        transaction.setAccountId(customer + "-A");
+        transaction.setDate(LocalDateTime.now());
+        transaction.setModeOfTransaction("SYNTHETIC");
+        transaction.setAmount(amount(random));
+        transaction.setType(random.nextBoolean() ? TransactionType.CREDIT : TransactionType.DEBIT);
+        return transaction;
+    }
+    
+    private static String customer(Random random) {
+        return String.valueOf(1_000_000 + random.nextInt(CUSTOMERS));
+    }
+    
+    private static BigDecimal amount(Random random) {
+        return BigDecimal.valueOf(1 + random.nextInt(100_000), 2);
+    }
+}